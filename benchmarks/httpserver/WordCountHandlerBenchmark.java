@@ -0,0 +1,187 @@
+package httpserver;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// WordCountHandler.handle on its own, without the server around it: the exchange is a reusable fake whose URIs are
+// built (and their queries decoded) once, outside the timing. Run with the GC profiler (RecolorBenchmarks always adds it),
+// gc.alloc.rate.norm is what the handler allocates per request, e.g.
+//   java -jar target/benchmarks.jar WordCountHandler
+// The WordIndex is the counter because a lookup does not allocate, so only the request path itself is measured.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1)
+public class WordCountHandlerBenchmark {
+    private static final String INPUT_FILE = "./resources/war_and_peace.txt";
+    private static final String SEARCH_WORDS_FILE = "./resources/search_words.csv";
+
+    @State(Scope.Benchmark)
+    public static class Corpus {
+        public WordCountHandler handler;
+        public URI[] requests;
+
+        @Setup(Level.Trial)
+        public void load() throws IOException, URISyntaxException {
+            handler = new WordCountHandler(new WordIndex(new String(Files.readAllBytes(Paths.get(INPUT_FILE)), StandardCharsets.UTF_8)));
+            List<URI> uris = new ArrayList<>();
+            for (String word : Files.readAllLines(Paths.get(SEARCH_WORDS_FILE))) {
+                if (!word.isEmpty()) {
+                    URI uri = new URI(null, null, "/search", "word=" + word, null); // quotes the spaces, like a client would
+                    uri.getQuery(); // the decoded query is cached by the URI
+                    uris.add(uri);
+                }
+            }
+            requests = uris.toArray(new URI[0]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Exchange extends HttpExchange {
+        private final Headers requestHeaders = new Headers();
+        private final Headers responseHeaders = new Headers();
+        private final CountingOutputStream responseBody = new CountingOutputStream();
+        private URI requestURI;
+        private int responseCode;
+        private int next;
+
+        Exchange reset(URI[] requests) {
+            requestURI = requests[next];
+            next = next + 1 == requests.length ? 0 : next + 1;
+            responseCode = -1;
+            return this;
+        }
+
+        @Override
+        public Headers getRequestHeaders() {
+            return requestHeaders;
+        }
+
+        @Override
+        public Headers getResponseHeaders() {
+            return responseHeaders;
+        }
+
+        @Override
+        public URI getRequestURI() {
+            return requestURI;
+        }
+
+        @Override
+        public String getRequestMethod() {
+            return "GET";
+        }
+
+        @Override
+        public HttpContext getHttpContext() {
+            return null;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public InputStream getRequestBody() {
+            return InputStream.nullInputStream();
+        }
+
+        @Override
+        public OutputStream getResponseBody() {
+            return responseBody;
+        }
+
+        @Override
+        public void sendResponseHeaders(int responseCode, long responseLength) {
+            this.responseCode = responseCode;
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public int getResponseCode() {
+            return responseCode;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public String getProtocol() {
+            return "HTTP/1.1";
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return null;
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+        }
+
+        @Override
+        public void setStreams(InputStream inputStream, OutputStream outputStream) {
+        }
+
+        @Override
+        public HttpPrincipal getPrincipal() {
+            return null;
+        }
+    }
+
+    // Sums the response bytes instead of keeping them, so the response is consumed without allocating anything
+    private static class CountingOutputStream extends OutputStream {
+        long sum;
+
+        @Override
+        public void write(int b) {
+            sum += b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                sum += bytes[i];
+            }
+        }
+    }
+
+    @Benchmark
+    public long handle(Corpus corpus, Exchange exchange) throws IOException {
+        corpus.handler.handle(exchange.reset(corpus.requests));
+        return exchange.responseBody.sum;
+    }
+}
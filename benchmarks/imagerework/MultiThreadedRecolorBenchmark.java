@@ -0,0 +1,55 @@
+package imagerework;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// The recolor paths across thread counts:
+// - threadPerSlice: ImageEditor.recolorMultiThreaded, one new thread per horizontal slice, generic per-pixel path
+// - tiled: TiledRecolorEngine, a pool created once with the direct raster path on every tile
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class MultiThreadedRecolorBenchmark {
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private TiledRecolorEngine engine;
+
+    @Setup(Level.Trial)
+    public void createEngine() {
+        engine = new TiledRecolorEngine(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeEngine() {
+        engine.close();
+    }
+
+    @Benchmark
+    public void threadPerSlice(RecolorState state, PixelCounter counter) {
+        ImageEditor.recolorMultiThreaded(state.originalImage, state.resultImage, threads);
+        counter.megapixels += state.megapixels;
+    }
+
+    @Benchmark
+    public void tiled(RecolorState state, PixelCounter counter) {
+        engine.recolor(state.originalImage, state.resultImage);
+        counter.megapixels += state.megapixels;
+    }
+}
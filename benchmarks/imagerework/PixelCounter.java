@@ -0,0 +1,20 @@
+package imagerework;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Counts the megapixels recolored, reported by JMH next to the images/s score as a rate: megapixels per second,
+// which unlike images/s can be compared across the image sizes
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class PixelCounter {
+    public double megapixels;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        megapixels = 0;
+    }
+}
@@ -0,0 +1,25 @@
+package imagerework;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Entry point of target/benchmarks.jar: runs the benchmarks with the GC profiler always on, which adds the allocation
+// rate per operation (gc.alloc.rate.norm, e.g. the array setRGB allocates for every pixel of the generic path) and the
+// number and time of the collections to every result. Any JMH option still works on the command line, e.g.
+//   mvn -P jmh package
+//   java -jar target/benchmarks.jar SingleThreaded -p size=3036x4048
+public class RecolorBenchmarks {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
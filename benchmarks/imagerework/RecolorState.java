@@ -0,0 +1,43 @@
+package imagerework;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+// The images shared by all the recolor benchmarks: a source of the given size in the layout the JPEG decoder produces
+// (TYPE_3BYTE_BGR, like many-flowers.jpg) and a TYPE_INT_RGB result, like ImageEditor.main.
+// The source is random noise where about half of the pixels are shades of gray, so the branch of the transform
+// cannot be predicted and both sides of it are measured.
+@State(Scope.Benchmark)
+public class RecolorState {
+    @Param({"640x480", "3036x4048", "8192x8192"})
+    public String size;
+
+    public BufferedImage originalImage;
+    public BufferedImage resultImage;
+    public double megapixels;
+
+    @Setup(Level.Trial)
+    public void createImages() {
+        int width = Integer.parseInt(size.substring(0, size.indexOf('x')));
+        int height = Integer.parseInt(size.substring(size.indexOf('x') + 1));
+        originalImage = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        resultImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        megapixels = width * (double) height / 1_000_000;
+
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int red = random.nextInt(256);
+                int green = random.nextBoolean() ? Math.max(0, Math.min(255, red + random.nextInt(41) - 20)) : random.nextInt(256);
+                int blue = random.nextBoolean() ? Math.max(0, Math.min(255, red + random.nextInt(41) - 20)) : random.nextInt(256);
+                originalImage.setRGB(x, y, ImageEditor.createRGBFromColors(red, green, blue));
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package imagerework;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// SingleThreadedRecolorBenchmark.direct with the scalar kernel: the kernel is chosen once per JVM, so it takes a fork of
+// its own with -Dimage.vector=false. The difference with direct is what the vector kernel buys.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dimage.vector=false"})
+public class ScalarKernelRecolorBenchmark {
+
+    @Benchmark
+    public void direct(RecolorState state, PixelCounter counter) {
+        if (DirectRasterRecolor.isVectorized()) {
+            throw new IllegalStateException("The vector kernel was selected, the fork must run with -Dimage.vector=false");
+        }
+        DirectRasterRecolor.recolorRegion(state.originalImage, state.resultImage, 0, 0,
+                state.originalImage.getWidth(), state.originalImage.getHeight());
+        counter.megapixels += state.megapixels;
+    }
+}
@@ -0,0 +1,54 @@
+package imagerework;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// The recolor paths on a single thread:
+// - generic: ImageEditor.recolorSingleThreaded, getRGB/setRGB through the color models for every pixel
+// - direct: DirectRasterRecolor on the raster arrays, through the vector kernel (the fork adds jdk.incubator.vector);
+//   ScalarKernelRecolorBenchmark runs the same with the scalar kernel
+// - perPixelFilter: the raster arrays again, but without any kernel: a pipeline holding only the recolor filter is not
+//   recognized as the recolor filter, so it is called pixel by pixel through PixelFilter.apply like any other filter
+// - lookupTable: the precomputed LookupTableFilter, one load from a 64MB table per pixel (built once, outside the timing)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "--add-modules", "jdk.incubator.vector"})
+public class SingleThreadedRecolorBenchmark {
+    private static final PixelFilter PER_PIXEL_RECOLOR = FilterPipeline.builder().add(PixelFilters.recolor()).build();
+
+    @Benchmark
+    public void generic(RecolorState state, PixelCounter counter) {
+        ImageEditor.recolorSingleThreaded(state.originalImage, state.resultImage);
+        counter.megapixels += state.megapixels;
+    }
+
+    @Benchmark
+    public void direct(RecolorState state, PixelCounter counter) {
+        DirectRasterRecolor.recolorRegion(state.originalImage, state.resultImage, 0, 0,
+                state.originalImage.getWidth(), state.originalImage.getHeight());
+        counter.megapixels += state.megapixels;
+    }
+
+    @Benchmark
+    public void lookupTable(RecolorState state, PixelCounter counter) {
+        DirectRasterRecolor.filterRegion(state.originalImage, state.resultImage, 0, 0,
+                state.originalImage.getWidth(), state.originalImage.getHeight(), LookupTableFilter.recolor());
+        counter.megapixels += state.megapixels;
+    }
+
+    @Benchmark
+    public void perPixelFilter(RecolorState state, PixelCounter counter) {
+        DirectRasterRecolor.filterRegion(state.originalImage, state.resultImage, 0, 0,
+                state.originalImage.getWidth(), state.originalImage.getHeight(), PER_PIXEL_RECOLOR);
+        counter.megapixels += state.megapixels;
+    }
+}
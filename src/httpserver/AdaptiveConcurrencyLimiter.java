@@ -0,0 +1,79 @@
+package httpserver;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// AIMD (additive increase, multiplicative decrease) concurrency limit, the same way TCP finds the capacity of a link:
+// while requests complete within the latency target and the limit is actually being used, the limit grows by about one
+// every limit requests; as soon as a request is slower than the target, the limit is cut by the backoff ratio. The cut
+// happens at most once per window of limit completions: the requests in flight when the server slowed down all complete
+// late, and cutting for each of them would collapse the limit to the minimum because of a single slowdown.
+// Requests above the limit are rejected right away instead of queueing, which keeps the latency of the admitted ones low.
+public class AdaptiveConcurrencyLimiter {
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong limitBits; // the limit is a double, stored as its raw bits so it can be updated with compareAndSet
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong lastBackoff; // the completion that last cut the limit
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long targetLatencyNanos) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyNanos = targetLatencyNanos;
+        this.limitBits = new AtomicLong(Double.doubleToRawLongBits(initialLimit));
+        this.lastBackoff = new AtomicLong(-maxLimit); // the first slow request may cut right away
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases a permit obtained from tryAcquire() and adjusts the limit with the latency of the request.
+     */
+    public void release(long latencyNanos) {
+        int inFlightBeforeRelease = inFlight.getAndDecrement();
+        long completion = completed.incrementAndGet();
+        boolean slow = latencyNanos > targetLatencyNanos;
+        if (slow) {
+            long last = lastBackoff.get();
+            // still in the window of the last cut, or another slow request is cutting for this window right now
+            if (completion - last < getLimit() || !lastBackoff.compareAndSet(last, completion)) {
+                return;
+            }
+        }
+        long currentBits;
+        double newLimit;
+        do {
+            currentBits = limitBits.get();
+            double limit = Double.longBitsToDouble(currentBits);
+            if (slow) {
+                newLimit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            } else if (inFlightBeforeRelease * 2 >= limit) {
+                newLimit = Math.min(maxLimit, limit + 1 / limit); // only grow when the limit is what holds us back
+            } else {
+                return;
+            }
+        } while (!limitBits.compareAndSet(currentBits, Double.doubleToRawLongBits(newLimit)));
+    }
+
+    public int getLimit() {
+        return (int) Double.longBitsToDouble(limitBits.get());
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,84 @@
+package httpserver;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+// Load shedding in front of the search handlers. Under overload it is better to answer some requests right away with
+// 503 and a Retry-After header than to let every request wait longer and longer until the clients time out.
+// A request is rejected when:
+// - it arrived while the executor queue was full (see InstrumentedExecutor)
+// - it already waited in the queue longer than the latency budget, the client has probably given up on it anyway
+// - the adaptive concurrency limit is reached (optional)
+public class AdmissionFilter extends Filter {
+    private final long queueWaitBudgetNanos;
+    private final String retryAfterSeconds;
+    private final AdaptiveConcurrencyLimiter limiter; // null when adaptive limiting is disabled
+    private final LongAdder rejectedQueueFull = new LongAdder();
+    private final LongAdder rejectedQueueWait = new LongAdder();
+    private final LongAdder rejectedConcurrencyLimit = new LongAdder();
+
+    public AdmissionFilter(long queueWaitBudgetNanos, int retryAfterSeconds, AdaptiveConcurrencyLimiter limiter) {
+        this.queueWaitBudgetNanos = queueWaitBudgetNanos;
+        this.retryAfterSeconds = Integer.toString(retryAfterSeconds);
+        this.limiter = limiter;
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        if (InstrumentedExecutor.isCurrentOverflow()) {
+            rejectedQueueFull.increment();
+            reject(exchange);
+            return;
+        }
+        if (InstrumentedExecutor.currentQueueWaitNanos() > queueWaitBudgetNanos) {
+            rejectedQueueWait.increment();
+            reject(exchange);
+            return;
+        }
+        if (limiter == null) {
+            chain.doFilter(exchange);
+            return;
+        }
+        if (!limiter.tryAcquire()) {
+            rejectedConcurrencyLimit.increment();
+            reject(exchange);
+            return;
+        }
+        long startTime = System.nanoTime();
+        try {
+            chain.doFilter(exchange);
+        } finally {
+            limiter.release(System.nanoTime() - startTime);
+        }
+    }
+
+    private void reject(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().add("Retry-After", retryAfterSeconds);
+        exchange.sendResponseHeaders(503, -1);
+        exchange.close();
+    }
+
+    @Override
+    public String description() {
+        return "Rejects requests with 503 when the server is overloaded";
+    }
+
+    public AdaptiveConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    public long getRejectedQueueFull() {
+        return rejectedQueueFull.sum();
+    }
+
+    public long getRejectedQueueWait() {
+        return rejectedQueueWait.sum();
+    }
+
+    public long getRejectedConcurrencyLimit() {
+        return rejectedConcurrencyLimit.sum();
+    }
+}
@@ -0,0 +1,156 @@
+package httpserver;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Aho-Corasick automaton over a batch of words, so all of them are counted in a single pass over the text instead of
+// one indexOf scan per word. Symbols are either chars (for String texts) or UTF-8 bytes (for memory-mapped texts).
+// Like the indexOf loop, overlapping occurrences and words occurring inside other words are all counted: every position
+// of the text records a visit of the state reached there, and the visits are pushed down the failure links at the end.
+public class AhoCorasickAutomaton {
+    private final int[][] childSymbols; // per state, the sorted symbols of its outgoing trie edges
+    private final int[][] childStates; // per state, the targets of those edges
+    private final int[] fail; // longest proper suffix of the state's string that is also a state
+    private final int[] breadthFirstOrder;
+    private final int[] wordStates; // the state reached by each word, -1 for empty words
+
+    private AhoCorasickAutomaton(List<int[]> words) {
+        List<Map<Integer, Integer>> trie = new ArrayList<>();
+        trie.add(new HashMap<>());
+        wordStates = new int[words.size()];
+        for (int w = 0; w < words.size(); w++) {
+            int[] symbols = words.get(w);
+            int state = 0;
+            for (int symbol : symbols) {
+                Integer next = trie.get(state).get(symbol);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new HashMap<>());
+                    trie.get(state).put(symbol, next);
+                }
+                state = next;
+            }
+            wordStates[w] = symbols.length == 0 ? -1 : state;
+        }
+
+        // compact the trie into sorted arrays, they are much cheaper to walk than the boxed maps
+        int numberOfStates = trie.size();
+        childSymbols = new int[numberOfStates][];
+        childStates = new int[numberOfStates][];
+        for (int state = 0; state < numberOfStates; state++) {
+            Map<Integer, Integer> children = trie.get(state);
+            int[] symbols = new int[children.size()];
+            int index = 0;
+            for (int symbol : children.keySet()) {
+                symbols[index++] = symbol;
+            }
+            Arrays.sort(symbols);
+            int[] targets = new int[symbols.length];
+            for (int i = 0; i < symbols.length; i++) {
+                targets[i] = children.get(symbols[i]);
+            }
+            childSymbols[state] = symbols;
+            childStates[state] = targets;
+        }
+
+        // failure links, computed breadth first so the link of a state's parent is always known before the state itself
+        fail = new int[numberOfStates];
+        breadthFirstOrder = new int[numberOfStates];
+        int head = 0;
+        int tail = 0;
+        breadthFirstOrder[tail++] = 0;
+        while (head < tail) {
+            int state = breadthFirstOrder[head++];
+            for (int i = 0; i < childSymbols[state].length; i++) {
+                int symbol = childSymbols[state][i];
+                int child = childStates[state][i];
+                if (state != 0) {
+                    int candidate = fail[state];
+                    while (candidate != 0 && child(candidate, symbol) < 0) {
+                        candidate = fail[candidate];
+                    }
+                    int target = child(candidate, symbol);
+                    fail[child] = target >= 0 ? target : 0;
+                }
+                breadthFirstOrder[tail++] = child;
+            }
+        }
+    }
+
+    public static AhoCorasickAutomaton forChars(List<String> words) {
+        List<int[]> symbols = new ArrayList<>(words.size());
+        for (String word : words) {
+            symbols.add(word.chars().toArray());
+        }
+        return new AhoCorasickAutomaton(symbols);
+    }
+
+    public static AhoCorasickAutomaton forUtf8(List<String> words) {
+        List<int[]> symbols = new ArrayList<>(words.size());
+        for (String word : words) {
+            byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+            int[] wordSymbols = new int[bytes.length];
+            for (int i = 0; i < bytes.length; i++) {
+                wordSymbols[i] = bytes[i] & 0xFF;
+            }
+            symbols.add(wordSymbols);
+        }
+        return new AhoCorasickAutomaton(symbols);
+    }
+
+    public int numberOfStates() {
+        return fail.length;
+    }
+
+    /**
+     * Follows the transition for the given symbol from the given state (0 is the initial state).
+     */
+    public int step(int state, int symbol) {
+        while (true) {
+            int next = child(state, symbol);
+            if (next >= 0) {
+                return next;
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = fail[state];
+        }
+    }
+
+    /**
+     * Turns the number of times every state was reached while scanning a text into the number of occurrences of every word,
+     * in the order the words were given. The visits array is modified.
+     */
+    public long[] countsFromVisits(long[] visits) {
+        // a visit of a state is also an occurrence of every word that is a suffix of it, i.e. along its failure links
+        for (int i = breadthFirstOrder.length - 1; i > 0; i--) {
+            int state = breadthFirstOrder[i];
+            visits[fail[state]] += visits[state];
+        }
+        long[] counts = new long[wordStates.length];
+        for (int w = 0; w < wordStates.length; w++) {
+            counts[w] = wordStates[w] < 0 ? 0 : visits[wordStates[w]];
+        }
+        return counts;
+    }
+
+    public long[] countAll(String text) {
+        long[] visits = new long[numberOfStates()];
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = step(state, text.charAt(i));
+            visits[state]++;
+        }
+        return countsFromVisits(visits);
+    }
+
+    private int child(int state, int symbol) {
+        int index = Arrays.binarySearch(childSymbols[state], symbol);
+        return index >= 0 ? childStates[state][index] : -1;
+    }
+}
@@ -0,0 +1,180 @@
+package httpserver;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bounded LRU cache in front of another WordCounter. The JMeter traffic keeps asking for the same finite vocabulary,
+// so after warmup most requests are answered without touching the text at all.
+// The cache is split into segments, each one an access ordered LinkedHashMap guarded by its own lock, so threads looking up
+// different words rarely contend. Concurrent misses for the same word are coalesced: the first thread computes the count and
+// the others wait for its result instead of scanning the text again.
+public class CachingWordCounter implements WordCounter {
+    private static final int NUMBER_OF_SEGMENTS = 16;
+
+    private final WordCounter delegate;
+    private final Segment[] segments = new Segment[NUMBER_OF_SEGMENTS];
+    private final ConcurrentHashMap<String, CompletableFuture<Long>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder(); // misses that waited for another thread's computation
+    private final LongAdder evictions = new LongAdder();
+    private final AtomicLong generation = new AtomicLong(); // bumped by invalidateAll() so results computed before it are not cached
+
+    public CachingWordCounter(WordCounter delegate, int maxSize) {
+        if (maxSize < NUMBER_OF_SEGMENTS) {
+            throw new IllegalArgumentException("maxSize must be at least " + NUMBER_OF_SEGMENTS);
+        }
+        this.delegate = delegate;
+        for (int i = 0; i < NUMBER_OF_SEGMENTS; i++) {
+            segments[i] = new Segment(maxSize / NUMBER_OF_SEGMENTS);
+        }
+    }
+
+    @Override
+    public long countWord(String word) {
+        Segment segment = segmentFor(word);
+        Long cached = segment.get(word);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        long computationGeneration = generation.get();
+        CompletableFuture<Long> newComputation = new CompletableFuture<>();
+        CompletableFuture<Long> computation = inFlight.putIfAbsent(word, newComputation);
+        if (computation != null) {
+            coalesced.increment();
+            return computation.join(); // another thread is already counting this word
+        }
+
+        try {
+            long count = delegate.countWord(word);
+            segment.put(word, count, computationGeneration);
+            newComputation.complete(count);
+            return count;
+        } catch (Throwable e) {
+            // also Errors (e.g. the InternalError of a mapped file truncated under us): the waiters must never be left hanging
+            newComputation.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(word, newComputation);
+        }
+    }
+
+    // Cached words are answered from the cache, all the misses are handed to the delegate as one smaller batch.
+    // Batch misses are not coalesced with concurrent single word misses.
+    @Override
+    public long[] countWords(List<String> words) {
+        long computationGeneration = generation.get();
+        long[] counts = new long[words.size()];
+        List<String> missingWords = new ArrayList<>();
+        List<Integer> missingIndexes = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            Long cached = segmentFor(words.get(i)).get(words.get(i));
+            if (cached != null) {
+                hits.increment();
+                counts[i] = cached;
+            } else {
+                misses.increment();
+                missingWords.add(words.get(i));
+                missingIndexes.add(i);
+            }
+        }
+        if (!missingWords.isEmpty()) {
+            long[] missingCounts = delegate.countWords(missingWords);
+            for (int i = 0; i < missingCounts.length; i++) {
+                String word = missingWords.get(i);
+                segmentFor(word).put(word, missingCounts[i], computationGeneration);
+                counts[missingIndexes.get(i)] = missingCounts[i];
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Drops every cached count, for example after the underlying corpus changed.
+     * Counts still being computed against the old data when this is called are returned to their callers but not cached.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        inFlight.clear();
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private Segment segmentFor(String word) {
+        int hash = word.hashCode();
+        hash ^= hash >>> 16; // spread the high bits, the low bits of String.hashCode are not well distributed for short words
+        return segments[hash & (NUMBER_OF_SEGMENTS - 1)];
+    }
+
+    private class Segment {
+        private final LinkedHashMap<String, Long> entries;
+
+        public Segment(int capacity) {
+            // access order turns the LinkedHashMap into an LRU list: every get moves the entry to the end
+            this.entries = new LinkedHashMap<>(capacity * 4 / 3 + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        public synchronized Long get(String word) {
+            return entries.get(word);
+        }
+
+        public synchronized void put(String word, long count, long computationGeneration) {
+            // checked under the segment lock: either invalidateAll() already bumped the generation and we skip the put,
+            // or its clear() of this segment comes after the put and removes the entry
+            if (generation.get() == computationGeneration) {
+                entries.put(word, count);
+            }
+        }
+
+        public synchronized void clear() {
+            entries.clear();
+        }
+
+        public synchronized int size() {
+            return entries.size();
+        }
+    }
+}
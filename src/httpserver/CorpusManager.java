@@ -0,0 +1,155 @@
+package httpserver;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Serves word counts across every document of a directory and picks up new, changed and deleted documents without a restart.
+// Every document gets its own WordCounter (built with the configured search.mode). The set of counters is published as an
+// immutable snapshot through a volatile field: request threads only ever read the current snapshot, so they never block,
+// while a background thread watches the directory, rebuilds only the documents that changed and then swaps in a new snapshot.
+public class CorpusManager implements WordCounter {
+    private static final long SETTLE_MILLIS = 200; // editors and copies fire several events per file, wait for them to settle
+
+    private final Path directory;
+    private final DocumentLoader loader;
+    private final List<Runnable> reloadListeners = new CopyOnWriteArrayList<>();
+    private volatile Map<Path, WordCounter> snapshot; // never modified once published
+
+    // Builds the counter of a single document
+    public interface DocumentLoader {
+        WordCounter load(Path document) throws IOException;
+    }
+
+    public CorpusManager(Path directory, DocumentLoader loader) throws IOException {
+        this.directory = directory;
+        this.loader = loader;
+        Map<Path, WordCounter> documents = new HashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path document : stream) {
+                if (Files.isRegularFile(document)) {
+                    documents.put(document, loader.load(document));
+                }
+            }
+        }
+        this.snapshot = Collections.unmodifiableMap(documents);
+    }
+
+    @Override
+    public long countWord(String word) {
+        long count = 0;
+        for (WordCounter document : snapshot.values()) { // a single volatile read, a concurrent reload does not affect this request
+            count += document.countWord(word);
+        }
+        return count;
+    }
+
+    @Override
+    public long[] countWords(List<String> words) {
+        long[] counts = new long[words.size()];
+        for (WordCounter document : snapshot.values()) {
+            long[] documentCounts = document.countWords(words);
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += documentCounts[i];
+            }
+        }
+        return counts;
+    }
+
+    public int getNumberOfDocuments() {
+        return snapshot.size();
+    }
+
+    /**
+     * Registers a callback invoked on the watcher thread after every new snapshot has been published,
+     * for example to invalidate a cache of results computed from the previous snapshot.
+     */
+    public void addReloadListener(Runnable listener) {
+        reloadListeners.add(listener);
+    }
+
+    public void startWatching() throws IOException {
+        WatchService watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        Thread watcher = new Thread(() -> watch(watchService), "corpus-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watch(WatchService watchService) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Thread.sleep(SETTLE_MILLIS);
+                Set<Path> changed = new HashSet<>();
+                boolean overflow = false;
+                do {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            overflow = true; // some events were lost, compare the whole directory against the snapshot
+                        } else {
+                            changed.add(directory.resolve((Path) event.context()));
+                        }
+                    }
+                    key.reset();
+                } while ((key = watchService.poll()) != null);
+
+                // a failed batch is logged and the watcher carries on: hot reload must not stop for good because of it
+                try {
+                    if (overflow) {
+                        changed.addAll(snapshot.keySet());
+                        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                            for (Path document : stream) {
+                                changed.add(document);
+                            }
+                        }
+                    }
+                    reload(changed);
+                } catch (IOException | RuntimeException e) {
+                    System.out.println("Could not reload the corpus, keeping the previous snapshot: " + e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // the watcher is shutting down
+        }
+    }
+
+    private void reload(Set<Path> changed) {
+        long startTime = System.currentTimeMillis();
+        Map<Path, WordCounter> documents = new HashMap<>(snapshot); // unchanged documents keep their existing counters
+        int rebuilt = 0;
+        int removed = 0;
+        for (Path document : changed) {
+            if (Files.isRegularFile(document)) {
+                try {
+                    documents.put(document, loader.load(document));
+                    rebuilt++;
+                } catch (IOException | RuntimeException e) {
+                    System.out.println("Could not load " + document + ", keeping the previous version: " + e);
+                }
+            } else if (documents.remove(document) != null) {
+                removed++;
+            }
+        }
+        snapshot = Collections.unmodifiableMap(documents);
+        for (Runnable listener : reloadListeners) {
+            listener.run();
+        }
+        System.out.println(String.format("Corpus reloaded in %d ms: %d document(s) rebuilt, %d removed, %d in total",
+                System.currentTimeMillis() - startTime, rebuilt, removed, documents.size()));
+    }
+}
@@ -0,0 +1,41 @@
+package httpserver;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Direct buffers are expensive to allocate and are only released by the GC, so connections borrow them from this pool
+// and give them back when they are closed instead of allocating new ones for every connection.
+public class DirectBufferPool {
+    private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private final int bufferSize;
+    private final int maxPooledBuffers; // buffers released above this limit are left to the GC
+
+    public DirectBufferPool(int bufferSize, int maxPooledBuffers) {
+        this.bufferSize = bufferSize;
+        this.maxPooledBuffers = maxPooledBuffers;
+    }
+
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        pooled.decrementAndGet();
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        buffer.clear();
+        if (pooled.incrementAndGet() <= maxPooledBuffers) {
+            buffers.offer(buffer);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
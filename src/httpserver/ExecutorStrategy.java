@@ -0,0 +1,46 @@
+package httpserver;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+// The different ways the http server can schedule incoming requests onto threads.
+public enum ExecutorStrategy {
+    // a fixed number of platform threads sharing one unbounded FIFO queue (the original behaviour)
+    FIXED {
+        @Override
+        public ExecutorService create(int numberOfThreads) {
+            return Executors.newFixedThreadPool(numberOfThreads);
+        }
+    },
+    // a ForkJoinPool in async mode: every worker has its own deque and idle workers steal from the busy ones
+    WORK_STEALING {
+        @Override
+        public ExecutorService create(int numberOfThreads) {
+            return Executors.newWorkStealingPool(numberOfThreads);
+        }
+    },
+    // a new virtual thread for every request, there is no pool queue at all (requires a Java 21+ runtime)
+    VIRTUAL {
+        @Override
+        public ExecutorService create(int numberOfThreads) {
+            try {
+                // looked up reflectively so the project still compiles against older JDKs
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Virtual threads are not available on Java " + Runtime.version().feature(), e);
+            }
+        }
+    };
+
+    /**
+     * Creates the executor for this strategy. numberOfThreads is ignored by VIRTUAL.
+     */
+    public abstract ExecutorService create(int numberOfThreads);
+
+    public static ExecutorStrategy fromName(String name) {
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+}
@@ -0,0 +1,136 @@
+package httpserver;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Wraps the executor of the http server to keep track of how many requests are waiting for a thread (the queue depth),
+// how many are being handled right now and how many completed, the same way for every ExecutorStrategy.
+// The time every task spent waiting in the queue is recorded into a histogram and made available to the task itself.
+// The queue is bounded: once queueCapacity tasks are waiting, new tasks are not queued but handed to a couple of dedicated
+// reject threads, flagged as overflow, so the AdmissionFilter can answer them with a cheap 503 instead of letting the queue
+// grow. They are not run on the submitting thread: for the HttpServer that is its single dispatcher thread, and the task
+// reads the request headers, so one slow client would stop every accept and dispatch while the server is overloaded.
+// Only when the reject threads are swamped as well does an overflow task run on the submitting thread.
+public class InstrumentedExecutor implements Executor {
+    private static final long OVERFLOW = -1;
+    private static final int REJECT_THREADS = 2;
+    // queue wait of the task running on the current thread, or OVERFLOW; an array so setting it does not allocate
+    private static final ThreadLocal<long[]> CURRENT_QUEUE_WAIT = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final Executor delegate;
+    private final ExecutorStrategy strategy;
+    private final int queueCapacity;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger peakQueued = new AtomicInteger(); // highest queue depth since the last call to resetPeakQueued()
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+    private final LatencyHistogram queueWait;
+    private final ThreadPoolExecutor rejectExecutor;
+
+    public InstrumentedExecutor(Executor delegate, ExecutorStrategy strategy, int queueCapacity, LatencyHistogram queueWait) {
+        this.delegate = delegate;
+        this.strategy = strategy;
+        this.queueCapacity = queueCapacity;
+        this.queueWait = queueWait;
+        AtomicInteger rejectThreads = new AtomicInteger();
+        this.rejectExecutor = new ThreadPoolExecutor(REJECT_THREADS, REJECT_THREADS, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                    Thread thread = new Thread(runnable, "overflow-reject-" + rejectThreads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        int depth;
+        do {
+            depth = queued.get();
+            if (depth >= queueCapacity) {
+                runOverflow(task);
+                return;
+            }
+        } while (!queued.compareAndSet(depth, depth + 1)); // reserve a slot in the queue, the capacity is never exceeded
+        peakQueued.accumulateAndGet(depth + 1, Math::max);
+        long enqueueTime = System.nanoTime();
+        try {
+            delegate.execute(() -> {
+                long wait = System.nanoTime() - enqueueTime;
+                queueWait.record(wait);
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                long[] currentQueueWait = CURRENT_QUEUE_WAIT.get();
+                currentQueueWait[0] = wait;
+                try {
+                    task.run();
+                } finally {
+                    currentQueueWait[0] = 0;
+                    active.decrementAndGet();
+                    completed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet(); // the task never made it into the queue, e.g. the delegate is shut down
+            throw e;
+        }
+    }
+
+    private void runOverflow(Runnable task) {
+        overflowed.increment();
+        rejectExecutor.execute(() -> runFlaggedAsOverflow(task));
+    }
+
+    private static void runFlaggedAsOverflow(Runnable task) {
+        long[] currentQueueWait = CURRENT_QUEUE_WAIT.get();
+        currentQueueWait[0] = OVERFLOW;
+        try {
+            task.run();
+        } finally {
+            currentQueueWait[0] = 0;
+        }
+    }
+
+    /**
+     * Returns how long the request handled by the current thread waited in the queue.
+     */
+    public static long currentQueueWaitNanos() {
+        return Math.max(0, CURRENT_QUEUE_WAIT.get()[0]);
+    }
+
+    /**
+     * Returns true if the request handled by the current thread arrived while the queue was full.
+     */
+    public static boolean isCurrentOverflow() {
+        return CURRENT_QUEUE_WAIT.get()[0] == OVERFLOW;
+    }
+
+    public ExecutorStrategy getStrategy() {
+        return strategy;
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    public int resetPeakQueued() {
+        return peakQueued.getAndSet(queued.get());
+    }
+
+    public int getActive() {
+        return active.get();
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    public long getOverflowed() {
+        return overflowed.sum();
+    }
+}
@@ -0,0 +1,86 @@
+package httpserver;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free histogram in the spirit of HdrHistogram: every power of two range of values is split into 32 linear sub-buckets,
+// so any recorded value is kept with a relative error below 1/32 (~3%) over the whole long range with a fixed 1888 buckets.
+// Recording is a single atomic increment, so all the request threads can record into the same histogram without locking.
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0; // clock adjustments can produce small negative durations
+        }
+        counts.incrementAndGet(bucketIndex(value));
+        totalCount.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the value below which the given percentage (0 to 100) of the recorded values fall,
+     * as the highest value of the bucket it was found in.
+     */
+    public long valueAtPercentile(double percentile) {
+        // the counts are read one by one while other threads keep recording, so this is a close approximation under load
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return Math.min(highestValueInBucket(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value); // position of the highest set bit, >= SUB_BUCKET_BITS
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift); // the top SUB_BUCKET_BITS + 1 bits, in [SUB_BUCKET_COUNT, 2 * SUB_BUCKET_COUNT)
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket - SUB_BUCKET_COUNT;
+    }
+
+    static long highestValueInBucket(int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,214 @@
+package httpserver;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// In-repo replacement for the JMeter plan (resources/performance_test_plan.jmx): sends /search?word= requests for the words
+// of resources/search_words.csv to a running server and prints the throughput and the latency distribution. Needs only the JDK.
+//
+// open loop (default): requests are sent at a constant arrival rate, whether or not the previous ones have completed,
+// like real independent users. The latency of every request is measured from the time it was *supposed* to be sent,
+// so a server stall is charged to every request that should have been sent during it (no coordinated omission).
+// closed loop: a fixed number of clients each send a request, wait for the response and send the next one, like the JMeter
+// thread group. With --rate the clients are paced and measured against their schedule the same way; without it they run flat
+// out and the latencies are pure service times, which hide any stall (the coordinated omission problem).
+//
+// Usage: LoadGenerator [--url http://localhost:8000/search] [--mode open|closed] [--rate 1000] [--concurrency 200]
+//                      [--duration 30] [--warmup 5] [--words ./resources/search_words.csv]
+public class LoadGenerator {
+    private static final double[] PERCENTILES = {50, 75, 90, 95, 99, 99.9, 99.99, 100};
+
+    private final HttpClient client;
+    private final String url;
+    private final String[] words;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder rejected = new LongAdder(); // any non-200 status, e.g. the 503 of the admission control
+    private final LongAdder failed = new LongAdder(); // connection errors and timeouts
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicLong lastCompletion = new AtomicLong();
+    private volatile long measureFrom; // requests intended to start before this are warmup and not recorded
+
+    public LoadGenerator(String url, String[] words) {
+        this.url = url;
+        this.words = words;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = option(args, "--url", "http://localhost:8000/search");
+        String mode = option(args, "--mode", "open");
+        int rate = Integer.parseInt(option(args, "--rate", mode.equals("open") ? "1000" : "0"));
+        int concurrency = Integer.parseInt(option(args, "--concurrency", "200"));
+        int durationSeconds = Integer.parseInt(option(args, "--duration", "30"));
+        int warmupSeconds = Integer.parseInt(option(args, "--warmup", "5"));
+        String wordsFile = option(args, "--words", "./resources/search_words.csv");
+
+        LoadGenerator loadGenerator = new LoadGenerator(url, readWords(wordsFile));
+        long startTime = System.nanoTime();
+        loadGenerator.measureFrom = startTime + Duration.ofSeconds(warmupSeconds).toNanos();
+        long endTime = loadGenerator.measureFrom + Duration.ofSeconds(durationSeconds).toNanos();
+
+        if (rate < 0 || (rate == 0 && mode.equals("open"))) {
+            // an open loop has no other pacing than the rate: 0 would send as fast as it can, forever
+            throw new IllegalArgumentException((mode.equals("open") ? "--rate must be positive in open mode: " : "--rate must not be negative: ") + rate);
+        }
+
+        if (mode.equals("open")) {
+            System.out.println(String.format("Open loop: %,d requests/second for %ds (+%ds warmup) against %s", rate, durationSeconds, warmupSeconds, url));
+            loadGenerator.runOpenLoop(rate, startTime, endTime);
+        } else if (mode.equals("closed")) {
+            System.out.println(String.format("Closed loop: %d clients%s for %ds (+%ds warmup) against %s", concurrency,
+                    rate > 0 ? String.format(" paced at %,d requests/second in total", rate) : "", durationSeconds, warmupSeconds, url));
+            loadGenerator.runClosedLoop(concurrency, rate, startTime, endTime);
+        } else {
+            throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+        loadGenerator.printReport(durationSeconds);
+    }
+
+    private void runOpenLoop(int rate, long startTime, long endTime) throws InterruptedException {
+        double period = 1_000_000_000.0 / rate;
+        for (long i = 0; ; i++) {
+            long intendedStart = startTime + (long) (i * period);
+            if (intendedStart >= endTime) {
+                break;
+            }
+            parkUntil(intendedStart);
+            outstanding.incrementAndGet();
+            client.sendAsync(request(i), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        record(intendedStart, response, error);
+                        outstanding.decrementAndGet();
+                    });
+        }
+        // wait for the requests still in flight, they are part of the measurement
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (outstanding.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void runClosedLoop(int concurrency, int rate, long startTime, long endTime) throws InterruptedException {
+        List<Thread> clients = new ArrayList<>(concurrency);
+        double period = rate > 0 ? 1_000_000_000.0 * concurrency / rate : 0; // every client sends 1/concurrency of the rate
+        for (int c = 0; c < concurrency; c++) {
+            final int clientNumber = c;
+            Thread thread = new Thread(() -> {
+                long next = startTime + (long) (period * clientNumber / concurrency); // spread the clients over one period
+                for (long i = clientNumber; ; i += concurrency) {
+                    long intendedStart = rate > 0 ? next : System.nanoTime();
+                    if (intendedStart >= endTime) {
+                        return;
+                    }
+                    parkUntil(intendedStart);
+                    try {
+                        HttpResponse<Void> response = client.send(request(i), HttpResponse.BodyHandlers.discarding());
+                        record(intendedStart, response, null);
+                    } catch (IOException e) {
+                        record(intendedStart, null, e);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    next += (long) period;
+                }
+            }, "load-client-" + c);
+            clients.add(thread);
+        }
+        for (Thread thread : clients) {
+            thread.start();
+        }
+        for (Thread thread : clients) {
+            thread.join();
+        }
+    }
+
+    private HttpRequest request(long index) {
+        String word = words[(int) (index % words.length)];
+        return HttpRequest.newBuilder(URI.create(url + "?word=" + URLEncoder.encode(word, StandardCharsets.UTF_8)))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+    }
+
+    private void record(long intendedStart, HttpResponse<?> response, Throwable error) {
+        if (intendedStart < measureFrom) {
+            return;
+        }
+        long now = System.nanoTime();
+        histogram.record(now - intendedStart);
+        lastCompletion.accumulateAndGet(now, Math::max);
+        if (error != null) {
+            failed.increment();
+        } else if (response.statusCode() == 200) {
+            succeeded.increment();
+        } else {
+            rejected.increment();
+        }
+    }
+
+    private void printReport(int durationSeconds) {
+        long total = histogram.getCount();
+        System.out.println(String.format("%n%,d requests in %ds: %,d ok, %,d non-200, %,d failed",
+                total, durationSeconds, succeeded.sum(), rejected.sum(), failed.sum()));
+        // measured until the last response arrived: if the server fell behind, the achieved rate is below the offered one
+        double elapsedSeconds = Math.max(durationSeconds, (lastCompletion.get() - measureFrom) / 1_000_000_000.0);
+        System.out.println(String.format("Throughput: %,.1f requests/second (%,.1f ok/second) over %.1fs",
+                total / elapsedSeconds, succeeded.sum() / elapsedSeconds, elapsedSeconds));
+        if (total == 0) {
+            return;
+        }
+        System.out.println(String.format("Mean latency: %.3f ms", histogram.getSum() / 1_000_000.0 / total));
+        System.out.println("Latency percentiles:");
+        for (double percentile : PERCENTILES) {
+            System.out.println(String.format("  %7s%%  %10.3f ms", formatPercentile(percentile), histogram.valueAtPercentile(percentile) / 1_000_000.0));
+        }
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? Integer.toString((int) percentile) : Double.toString(percentile);
+    }
+
+    private static void parkUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static String[] readWords(String file) throws IOException {
+        List<String> words = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(file))) {
+            if (!line.trim().isEmpty()) {
+                words.add(line.trim());
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+
+    private static String option(String[] args, String name, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+}
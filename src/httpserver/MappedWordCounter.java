@@ -0,0 +1,153 @@
+package httpserver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// Counts (overlapping) substring matches directly in the bytes of a memory-mapped file with Boyer-Moore-Horspool.
+// Nothing is copied to the heap or decoded, the operating system pages the file in on demand, so startup time and heap usage
+// do not depend on the size of the corpus. The file is expected to be UTF-8 (or plain ASCII): since UTF-8 is self-synchronizing,
+// counting the encoded bytes of a word gives the same result as counting the word in the decoded text.
+// The mapping reads the file as it is on disk at every access: if the file is truncated while mapped, reading the missing
+// pages faults, which the counter reports as an UncheckedIOException until it is replaced. Replacing a file by renaming a
+// new one over it is safe (the mapping keeps the old one alive); for files rewritten in place, snapshotOf maps a copy.
+public class MappedWordCounter implements WordCounter {
+    // a single MappedByteBuffer is limited to 2GB, so bigger files are mapped as several segments
+    private static final long SEGMENT_SIZE = 1L << 30;
+    // consecutive segments overlap by this many bytes minus one so matches crossing a segment boundary are still found
+    public static final int MAX_WORD_BYTES = 4096;
+
+    private final MappedByteBuffer[] segments;
+    private final long size;
+
+    public MappedWordCounter(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            this.size = channel.size();
+            int numberOfSegments = (int) Math.max(1, (size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+            this.segments = new MappedByteBuffer[numberOfSegments];
+            for (int i = 0; i < numberOfSegments; i++) {
+                long start = i * SEGMENT_SIZE;
+                long length = Math.min(SEGMENT_SIZE + MAX_WORD_BYTES - 1, size - start);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length); // the mapping stays valid after the channel is closed
+            }
+        }
+    }
+
+    /**
+     * Maps a private copy of the file instead of the file itself, so the counter keeps working when the original is
+     * truncated or rewritten in place. The copy is made in java.io.tmpdir and deleted right away: the mapping keeps
+     * its pages alive until it is garbage collected (on Windows, where a mapped file cannot be deleted, on exit).
+     * The price is a full copy of the file every time, which is what mapping it was meant to avoid for large files.
+     */
+    public static MappedWordCounter snapshotOf(Path file) throws IOException {
+        Path copy = Files.createTempFile("mapped-", ".snapshot");
+        try {
+            Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+            return new MappedWordCounter(copy);
+        } finally {
+            try {
+                Files.delete(copy);
+            } catch (IOException e) {
+                copy.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    @Override
+    public long countWord(String word) {
+        byte[] pattern = word.getBytes(StandardCharsets.UTF_8);
+        if (pattern.length == 0) {
+            return 0;
+        }
+        if (pattern.length > MAX_WORD_BYTES) {
+            throw new IllegalArgumentException("Words longer than " + MAX_WORD_BYTES + " bytes are not supported");
+        }
+        int[] shifts = buildShiftTable(pattern);
+        long count = 0;
+        try {
+            for (MappedByteBuffer segment : segments) {
+                // only matches starting in this segment's own range are counted, the overlap belongs to the next segment
+                count += countInSegment(segment, (int) Math.min(SEGMENT_SIZE, segment.limit()), pattern, shifts);
+            }
+        } catch (InternalError e) {
+            throw truncated(e);
+        }
+        return count;
+    }
+
+    @Override
+    public long[] countWords(List<String> words) {
+        AhoCorasickAutomaton automaton = AhoCorasickAutomaton.forUtf8(words);
+        long[] visits = new long[automaton.numberOfStates()];
+        int state = 0;
+        // the segments are contiguous in the file once their overlap is skipped, so the automaton simply carries on from one to the next
+        try {
+            for (MappedByteBuffer segment : segments) {
+                int end = (int) Math.min(SEGMENT_SIZE, segment.limit());
+                for (int position = 0; position < end; position++) {
+                    state = automaton.step(state, segment.get(position) & 0xFF);
+                    visits[state]++;
+                }
+            }
+        } catch (InternalError e) {
+            throw truncated(e);
+        }
+        return automaton.countsFromVisits(visits);
+    }
+
+    // the JVM reports a fault reading a mapped page (the file was truncated under the mapping) as an InternalError
+    private static UncheckedIOException truncated(InternalError e) {
+        return new UncheckedIOException(new IOException("The mapped file was truncated while in use", e));
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public int getNumberOfSegments() {
+        return segments.length;
+    }
+
+    private static long countInSegment(MappedByteBuffer segment, int startLimit, byte[] pattern, int[] shifts) {
+        int last = pattern.length - 1;
+        int end = segment.limit() - pattern.length; // last possible start of a match in this mapping
+        long count = 0;
+        int position = 0;
+        // only absolute gets are used, they do not touch the buffer position, so many threads can search the same buffer at once
+        while (position <= end && position < startLimit) {
+            byte lastByte = segment.get(position + last);
+            if (lastByte == pattern[last]) {
+                int i = last - 1;
+                while (i >= 0 && segment.get(position + i) == pattern[i]) {
+                    i--;
+                }
+                if (i < 0) {
+                    count++;
+                }
+            }
+            // shifting by the distance of the window's last byte to its last occurrence in the pattern never skips a match,
+            // which also makes overlapping matches count the same way as the indexOf loop
+            position += shifts[lastByte & 0xFF];
+        }
+        return count;
+    }
+
+    private static int[] buildShiftTable(byte[] pattern) {
+        int[] shifts = new int[256];
+        int last = pattern.length - 1;
+        for (int i = 0; i < shifts.length; i++) {
+            shifts[i] = pattern.length;
+        }
+        for (int i = 0; i < last; i++) {
+            shifts[pattern[i] & 0xFF] = last - i;
+        }
+        return shifts;
+    }
+}
@@ -0,0 +1,336 @@
+package httpserver;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Non-blocking alternative to the com.sun HttpServer used by ThroughputHttpServer, serving the same /search?word= contract
+// (and the same port by default) so the JMeter plan can target either one.
+// One acceptor thread hands the accepted connections round robin to a small number of reactor threads. Every reactor
+// multiplexes its connections with its own Selector, parses the requests straight out of pooled direct buffers and
+// supports HTTP/1.1 keep-alive (and pipelining), so there is no per-request thread hand-off and very little per-request allocation.
+public class NioWordCountServer {
+    private static final int PORT = Integer.getInteger("server.port", 8000);
+    private static final int NUMBER_OF_REACTORS = Integer.getInteger("nio.reactors", Runtime.getRuntime().availableProcessors());
+    private static final int BUFFER_SIZE = 8 * 1024; // also the maximum size of the request line plus headers
+    private static final int MAX_RESPONSE_SIZE = 256; // we stop processing pipelined requests when less than this is left in the output buffer
+    private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+
+    private final WordCounter wordCounter;
+    private final DirectBufferPool bufferPool;
+    private final Reactor[] reactors;
+
+    public static void main(String[] args) throws IOException {
+        new NioWordCountServer(ThroughputHttpServer.loadWordCounter(), NUMBER_OF_REACTORS).start(PORT);
+    }
+
+    public NioWordCountServer(WordCounter wordCounter, int numberOfReactors) throws IOException {
+        this.wordCounter = wordCounter;
+        this.bufferPool = new DirectBufferPool(BUFFER_SIZE, 4096);
+        this.reactors = new Reactor[numberOfReactors];
+        for (int i = 0; i < numberOfReactors; i++) {
+            reactors[i] = new Reactor(i);
+        }
+    }
+
+    public void start(int port) throws IOException {
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        for (Reactor reactor : reactors) {
+            reactor.start();
+        }
+
+        Thread acceptor = new Thread(() -> {
+            int next = 0;
+            while (serverChannel.isOpen()) {
+                try {
+                    SocketChannel channel = serverChannel.accept(); // blocking accept, only the reactors are non-blocking
+                    channel.socket().setTcpNoDelay(true);
+                    reactors[next].register(channel);
+                    next = (next + 1) % reactors.length;
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }, "nio-acceptor");
+        acceptor.start();
+        System.out.println(String.format("NIO server listening on port %d with %d reactor threads", port, reactors.length));
+    }
+
+    private class Reactor extends Thread {
+        private final Selector selector;
+        private final Queue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<>(); // handed over by the acceptor thread
+
+        public Reactor(int id) throws IOException {
+            super("nio-reactor-" + id);
+            this.selector = Selector.open();
+        }
+
+        public void register(SocketChannel channel) {
+            pendingChannels.add(channel);
+            selector.wakeup(); // channels can only be registered from the thread that owns the selector, so wake it up to do it
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select();
+                    registerPendingChannels();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                connection.onReadable();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.onWritable();
+                            }
+                        } catch (IOException e) {
+                            connection.close(); // the client went away
+                        } catch (RuntimeException e) {
+                            // a bug triggered by one request must not kill the reactor and hang all its other connections
+                            e.printStackTrace();
+                            connection.close();
+                        }
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        private void registerPendingChannels() throws IOException {
+            SocketChannel channel;
+            while ((channel = pendingChannels.poll()) != null) {
+                channel.configureBlocking(false);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new Connection(channel, key));
+            }
+        }
+    }
+
+    // State of a single keep-alive connection. Only ever touched by the reactor thread that owns it.
+    private class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private ByteBuffer input; // in write mode: bytes [0, position) have been received but not processed yet
+        private ByteBuffer output; // in write mode: bytes [0, position) are waiting to be sent
+        private long bodyBytesToSkip = 0; // request bodies are not used by /search, but must be consumed to keep the connection in sync
+        private boolean closeAfterFlush = false;
+
+        public Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+            this.input = bufferPool.acquire();
+            this.output = bufferPool.acquire();
+        }
+
+        public void onReadable() throws IOException {
+            int read = channel.read(input);
+            if (read < 0) {
+                close();
+                return;
+            }
+            serve();
+        }
+
+        public void onWritable() throws IOException {
+            flush();
+            if (output.position() == 0 && !closeAfterFlush) {
+                serve(); // requests that were left in the input buffer while the output was full
+            }
+        }
+
+        // Answers the requests in the input buffer. When the output buffer fills up before they are all answered and the
+        // socket takes all of it right away, there is no OP_WRITE to come back later: carry on with the rest straight away.
+        private void serve() throws IOException {
+            boolean outputFull;
+            do {
+                outputFull = processRequests();
+                flush();
+            } while (outputFull && output != null && output.position() == 0);
+        }
+
+        // Returns true if it stopped because the output buffer is full, with requests possibly left in the input buffer
+        private boolean processRequests() {
+            while (!closeAfterFlush) {
+                if (output.remaining() < MAX_RESPONSE_SIZE) {
+                    return true;
+                }
+                if (bodyBytesToSkip > 0) {
+                    int skipped = (int) Math.min(bodyBytesToSkip, input.position());
+                    consumeInput(skipped);
+                    bodyBytesToSkip -= skipped;
+                    if (bodyBytesToSkip > 0) {
+                        return false;
+                    }
+                }
+
+                int headerEnd = indexOf(input, input.position(), HEADER_END);
+                if (headerEnd < 0) {
+                    if (!input.hasRemaining()) {
+                        writeResponse(431, "Request Header Fields Too Large", null, true);
+                    }
+                    return false; // wait for the rest of the request
+                }
+                handleRequest(headerEnd);
+                consumeInput(headerEnd + HEADER_END.length);
+            }
+            return false;
+        }
+
+        private void handleRequest(int headerEnd) {
+            int lineEnd = indexOf(input, headerEnd, new byte[]{'\r', '\n'});
+            if (lineEnd < 0) {
+                lineEnd = headerEnd;
+            }
+            String requestLine = ascii(input, 0, lineEnd);
+            String headers = ascii(input, lineEnd, headerEnd);
+
+            String[] parts = requestLine.split(" ");
+            if (parts.length != 3) {
+                writeResponse(400, "Bad Request", null, true);
+                return;
+            }
+            boolean keepAlive = parts[2].equals("HTTP/1.1");
+            String connectionHeader = headerValue(headers, "connection");
+            if (connectionHeader != null) {
+                keepAlive = connectionHeader.equalsIgnoreCase("keep-alive");
+            }
+            String contentLength = headerValue(headers, "content-length");
+            if (contentLength != null) {
+                bodyBytesToSkip = parseContentLength(contentLength);
+                if (bodyBytesToSkip < 0) {
+                    // without a valid length we cannot tell where the next request starts
+                    bodyBytesToSkip = 0;
+                    writeResponse(400, "Bad Request", null, true);
+                    return;
+                }
+            }
+
+            // parsed like the com.sun server does, so both answer the same request the same way: the query is
+            // percent-decoded by URI.getQuery ('+' stays a '+') and then read by the same WordCountHandler.parseWord
+            URI target;
+            try {
+                target = new URI(parts[1]);
+            } catch (URISyntaxException e) { // e.g. a malformed escape such as %zz
+                writeResponse(400, "Bad Request", null, true);
+                return;
+            }
+            if (!"/search".equals(target.getPath())) {
+                writeResponse(404, "Not Found", null, !keepAlive);
+                return;
+            }
+            String word = WordCountHandler.parseWord(target.getQuery());
+            if (word == null) {
+                writeResponse(400, "Bad Request", null, !keepAlive);
+                return;
+            }
+            long count = wordCounter.countWord(word);
+            writeResponse(200, "OK", Long.toString(count), !keepAlive);
+        }
+
+        private void writeResponse(int status, String reason, String body, boolean close) {
+            byte[] bodyBytes = body == null ? new byte[0] : body.getBytes(StandardCharsets.US_ASCII);
+            StringBuilder head = new StringBuilder(96)
+                    .append("HTTP/1.1 ").append(status).append(' ').append(reason).append("\r\n")
+                    .append("Content-Length: ").append(bodyBytes.length).append("\r\n");
+            if (close) {
+                head.append("Connection: close\r\n");
+            }
+            head.append("\r\n");
+            output.put(head.toString().getBytes(StandardCharsets.US_ASCII));
+            output.put(bodyBytes);
+            closeAfterFlush = close;
+        }
+
+        private void flush() throws IOException {
+            output.flip();
+            channel.write(output);
+            output.compact();
+            if (output.position() > 0) {
+                key.interestOps(SelectionKey.OP_WRITE); // the socket is full, stop reading until the client catches up
+            } else if (closeAfterFlush) {
+                close();
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        private void consumeInput(int length) {
+            input.flip();
+            input.position(length);
+            input.compact();
+        }
+
+        public void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            if (input != null) {
+                bufferPool.release(input);
+                bufferPool.release(output);
+                input = null;
+                output = null;
+            }
+        }
+    }
+
+    // Returns the Content-Length, or -1 if it is not a non-negative decimal number.
+    private static long parseContentLength(String value) {
+        try {
+            return Math.max(-1, Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String headerValue(String headers, String name) {
+        for (String line : headers.split("\r\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase(name)) {
+                return line.substring(colon + 1).trim();
+            }
+        }
+        return null;
+    }
+
+    private static int indexOf(ByteBuffer buffer, int limit, byte[] pattern) {
+        for (int i = 0; i + pattern.length <= limit; i++) {
+            int j = 0;
+            while (j < pattern.length && buffer.get(i + j) == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String ascii(ByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(from + i);
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
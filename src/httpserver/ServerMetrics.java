@@ -0,0 +1,140 @@
+package httpserver;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+// Per-request instrumentation of the http server, served on /metrics in the Prometheus text format:
+// - how long every request waited in the executor queue before a worker thread picked it up
+// - how long the handler of every context took and how many bytes it wrote
+// plus any gauge or counter registered by the other components (executor, cache...).
+public class ServerMetrics {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final Map<String, ContextMetrics> contexts = new ConcurrentSkipListMap<>(); // sorted so the output is stable
+    private final List<Sample> samples = new CopyOnWriteArrayList<>();
+
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    /**
+     * Returns a filter to add to the given context which records the handler time and the response size of every request.
+     */
+    public Filter filterFor(String context) {
+        ContextMetrics contextMetrics = contexts.computeIfAbsent(context, key -> new ContextMetrics());
+        return new Filter() {
+            @Override
+            public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+                CountingOutputStream countingStream = new CountingOutputStream(exchange.getResponseBody());
+                exchange.setStreams(null, countingStream);
+                long startTime = System.nanoTime();
+                try {
+                    chain.doFilter(exchange);
+                } finally {
+                    contextMetrics.handlerTime.record(System.nanoTime() - startTime);
+                    contextMetrics.responseBytes.record(countingStream.count);
+                }
+            }
+
+            @Override
+            public String description() {
+                return "Records handler time and response size of " + context;
+            }
+        };
+    }
+
+    public void addGauge(String name, String help, LongSupplier value) {
+        samples.add(new Sample(name, help, "gauge", value));
+    }
+
+    public void addCounter(String name, String help, LongSupplier value) {
+        samples.add(new Sample(name, help, "counter", value));
+    }
+
+    public String toPrometheus() {
+        StringBuilder builder = new StringBuilder(4096);
+        appendHeader(builder, "http_queue_wait_seconds", "Time requests spent waiting for a worker thread", "summary");
+        appendSummary(builder, "http_queue_wait_seconds", "", queueWait, NANOS_PER_SECOND);
+        // all the samples of a metric must be grouped together, so every metric loops over the contexts
+        appendHeader(builder, "http_handler_seconds", "Time spent in the handler", "summary");
+        for (Map.Entry<String, ContextMetrics> entry : contexts.entrySet()) {
+            appendSummary(builder, "http_handler_seconds", "context=\"" + entry.getKey() + "\"", entry.getValue().handlerTime, NANOS_PER_SECOND);
+        }
+        appendHeader(builder, "http_response_bytes", "Size of the response bodies", "summary");
+        for (Map.Entry<String, ContextMetrics> entry : contexts.entrySet()) {
+            appendSummary(builder, "http_response_bytes", "context=\"" + entry.getKey() + "\"", entry.getValue().responseBytes, 1);
+        }
+        for (Sample sample : samples) {
+            appendHeader(builder, sample.name, sample.help, sample.type);
+            builder.append(sample.name).append(' ').append(sample.value.getAsLong()).append('\n');
+        }
+        return builder.toString();
+    }
+
+    private static void appendHeader(StringBuilder builder, String name, String help, String type) {
+        builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        builder.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void appendSummary(StringBuilder builder, String name, String labels, LatencyHistogram histogram, double unit) {
+        String separator = labels.isEmpty() ? "" : ",";
+        for (double quantile : QUANTILES) {
+            builder.append(name).append("{").append(labels).append(separator).append("quantile=\"").append(quantile).append("\"} ")
+                    .append(histogram.valueAtPercentile(quantile * 100) / unit).append('\n');
+        }
+        String braces = labels.isEmpty() ? "" : "{" + labels + "}";
+        builder.append(name).append("_sum").append(braces).append(' ').append(histogram.getSum() / unit).append('\n');
+        builder.append(name).append("_count").append(braces).append(' ').append(histogram.getCount()).append('\n');
+    }
+
+    private static class ContextMetrics {
+        private final LatencyHistogram handlerTime = new LatencyHistogram();
+        private final LatencyHistogram responseBytes = new LatencyHistogram();
+    }
+
+    private static class Sample {
+        private final String name;
+        private final String help;
+        private final String type;
+        private final LongSupplier value;
+
+        public Sample(String name, String help, String type, LongSupplier value) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    // Only ever used by the thread handling the request, so the count does not need to be atomic
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+
+        public CountingOutputStream(OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            count += length;
+        }
+    }
+}
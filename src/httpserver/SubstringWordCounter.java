@@ -0,0 +1,98 @@
+package httpserver;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Reference implementation: scans the whole text with String.indexOf on every request and counts every (overlapping) substring match.
+// Every request is O(corpus), but the semantics of this counter are the ones all the other counters are checked against.
+// For texts above the parallel threshold a single request is split into chunks that are counted on the common ForkJoinPool,
+// so one request is no longer bound to one core.
+public class SubstringWordCounter implements WordCounter {
+    private final String text;
+    private final int parallelThreshold; // texts at least this long are counted in parallel
+    private final int chunkSize;
+
+    public SubstringWordCounter(String text) {
+        this(text, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    public SubstringWordCounter(String text, int parallelThreshold, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.text = text;
+        this.parallelThreshold = parallelThreshold;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public long countWord(String word) {
+        if (text.length() >= parallelThreshold && text.length() > chunkSize && !word.isEmpty()) {
+            return ForkJoinPool.commonPool().invoke(new CountTask(word, 0, text.length()));
+        }
+        return countInText(text, word);
+    }
+
+    @Override
+    public long[] countWords(List<String> words) {
+        return AhoCorasickAutomaton.forChars(words).countAll(text); // one pass over the text for the whole batch
+    }
+
+    private static long countInText(String text, String word) {
+        long count = 0;
+        int index = 0;
+
+        while (index >= 0) {
+            index = text.indexOf(word, index);
+            if (index >= 0) {
+                count++;
+                index++;
+            }
+        }
+        return count;
+    }
+
+    // Counts the matches starting at positions [from, to) in place: a match starting near to may end after it, so the
+    // characters up to to + word.length() - 1 are read, but a match starting there is left to the next range, which
+    // counts every match exactly once like the serial indexOf loop. Unlike indexOf from a position, the scan never runs
+    // past the range, and unlike a substring nothing is copied.
+    private static long countInRange(String text, String word, int from, int to) {
+        char first = word.charAt(0);
+        int last = Math.min(to, text.length() - word.length() + 1); // exclusive bound of the starts that still fit
+        long count = 0;
+        for (int i = from; i < last; i++) {
+            if (text.charAt(i) == first && text.regionMatches(i + 1, word, 1, word.length() - 1)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Counts the matches starting at positions [from, to) of the text, splitting the range in halves until it fits in a chunk
+    private class CountTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final String word;
+        private final int from;
+        private final int to;
+
+        public CountTask(String word, int from, int to) {
+            this.word = word;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= chunkSize) {
+                return countInRange(text, word, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            CountTask left = new CountTask(word, from, middle);
+            CountTask right = new CountTask(word, middle, to);
+            left.fork();
+            return right.compute() + left.join();
+        }
+    }
+}
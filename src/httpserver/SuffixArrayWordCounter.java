@@ -0,0 +1,150 @@
+package httpserver;
+
+import java.util.Arrays;
+
+// Suffix array over the whole text, built once at startup with prefix doubling (O(n log n)).
+// All the suffixes starting with a given word are adjacent in the sorted array, so two binary searches find the range of
+// matching suffixes in O(m log n) and the size of that range is the number of (overlapping) occurrences of the word.
+// This gives exactly the same answers as the SubstringWordCounter, unlike the whole word WordIndex.
+public class SuffixArrayWordCounter implements WordCounter {
+    private final char[] text;
+    private final int[] suffixArray; // suffixArray[i] is the start offset of the i-th smallest suffix of the text
+    private final long buildTimeMillis;
+
+    public SuffixArrayWordCounter(String text) {
+        long startTime = System.currentTimeMillis();
+        this.text = text.toCharArray();
+        this.suffixArray = buildSuffixArray(this.text);
+        this.buildTimeMillis = System.currentTimeMillis() - startTime;
+    }
+
+    @Override
+    public long countWord(String word) {
+        if (word.isEmpty()) {
+            return 0;
+        }
+        int first = lowerBound(word, false);
+        int last = lowerBound(word, true);
+        return last - first;
+    }
+
+    public long getBuildTimeMillis() {
+        return buildTimeMillis;
+    }
+
+    public long estimateMemoryFootprintBytes() {
+        return 16 + 2L * text.length + 16 + 4L * suffixArray.length;
+    }
+
+    // Returns the first index in the suffix array whose suffix is >= word (or > word when strict is set),
+    // looking only at the first word.length() characters of every suffix.
+    private int lowerBound(String word, boolean strict) {
+        int low = 0;
+        int high = suffixArray.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compareSuffixPrefix(suffixArray[middle], word);
+            if (comparison < 0 || (strict && comparison == 0)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int compareSuffixPrefix(int suffixStart, String word) {
+        int length = word.length();
+        for (int i = 0; i < length; i++) {
+            int position = suffixStart + i;
+            if (position == text.length) {
+                return -1; // the suffix is a proper prefix of the word, so it sorts before it
+            }
+            int difference = text[position] - word.charAt(i);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return 0;
+    }
+
+    private static int[] buildSuffixArray(char[] text) {
+        int n = text.length;
+        int[] suffixArray = new int[n];
+        if (n == 0) {
+            return suffixArray;
+        }
+        int[] rank = new int[n];
+        int[] newRank = new int[n];
+        int[] secondOrder = new int[n];
+        int[] buckets = new int[Math.max(Character.MAX_VALUE + 3, n + 2)];
+
+        // initial ranks are the characters themselves (+1 so that 0 can stand for "past the end of the text")
+        for (int i = 0; i < n; i++) {
+            rank[i] = text[i] + 1;
+        }
+        int maxRank = Character.MAX_VALUE + 1;
+        countingSort(identity(n), rank, suffixArray, buckets, maxRank);
+
+        for (int k = 1; ; k <<= 1) {
+            // order the suffixes by their second key (the rank of the suffix k characters further on):
+            // suffixes without a second half come first, then the others in the order of the previous round
+            int index = 0;
+            for (int i = n - k; i < n; i++) {
+                if (i >= 0) {
+                    secondOrder[index++] = i;
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                if (suffixArray[i] >= k) {
+                    secondOrder[index++] = suffixArray[i] - k;
+                }
+            }
+            // a stable sort by the first key finishes the sort by (first key, second key)
+            countingSort(secondOrder, rank, suffixArray, buckets, maxRank);
+
+            newRank[suffixArray[0]] = 1;
+            int classes = 1;
+            for (int i = 1; i < n; i++) {
+                int current = suffixArray[i];
+                int previous = suffixArray[i - 1];
+                if (rank[current] != rank[previous] || secondKey(rank, current + k) != secondKey(rank, previous + k)) {
+                    classes++;
+                }
+                newRank[current] = classes;
+            }
+            int[] swap = rank;
+            rank = newRank;
+            newRank = swap;
+            maxRank = classes;
+            if (classes == n || k >= n) {
+                return suffixArray; // every suffix has a distinct rank, the order is final
+            }
+        }
+    }
+
+    private static int secondKey(int[] rank, int position) {
+        return position < rank.length ? rank[position] : 0;
+    }
+
+    private static void countingSort(int[] order, int[] keys, int[] output, int[] buckets, int maxKey) {
+        Arrays.fill(buckets, 0, maxKey + 2, 0);
+        for (int position : order) {
+            buckets[keys[position] + 1]++;
+        }
+        for (int key = 1; key <= maxKey + 1; key++) {
+            buckets[key] += buckets[key - 1];
+        }
+        for (int position : order) {
+            output[buckets[keys[position]]++] = position;
+        }
+    }
+
+    private static int[] identity(int n) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        return order;
+    }
+}
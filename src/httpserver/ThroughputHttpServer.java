@@ -1,75 +1,279 @@
 package httpserver;
 
+import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.concurrent.Executor;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class ThroughputHttpServer {
-    private static final String INPUT_FILE = "./resources/war_and_peace.txt";
-    private static final int NUMBER_OF_THREADS = 8;
+    private static final String INPUT_FILE = System.getProperty("search.input", "./resources/war_and_peace.txt");
+    private static final String SEARCH_WORDS_FILE = "./resources/search_words.csv";
+    private static final int NUMBER_OF_THREADS = Integer.getInteger("server.threads", 8);
+    // fixed, work_stealing or virtual, see ExecutorStrategy
+    private static final ExecutorStrategy EXECUTOR_STRATEGY = ExecutorStrategy.fromName(System.getProperty("server.executor", "fixed"));
+    // how often the executor statistics are printed, 0 turns the report off
+    private static final int REPORT_INTERVAL_SECONDS = Integer.getInteger("server.report.seconds", 5);
+    // admission control, see AdmissionFilter: requests beyond the queue capacity or that waited longer than the budget get a 503
+    private static final int QUEUE_CAPACITY = Integer.getInteger("server.queue.capacity", 1024);
+    private static final long QUEUE_WAIT_BUDGET_MILLIS = Long.getLong("server.queue.budget.ms", 1000);
+    private static final int RETRY_AFTER_SECONDS = Integer.getInteger("server.retry.after.seconds", 1);
+    // when set, the number of concurrent searches adapts (AIMD) to keep the handler time under this target
+    private static final long LATENCY_TARGET_MILLIS = Long.getLong("server.limit.target.ms", 0);
+    // substring: String.indexOf scan over the whole text on every request (the original behaviour)
+    // index: whole word inverted index built once at startup, every request is a hash lookup
+    // suffix: suffix array built once at startup, same (substring) answers as the original behaviour in O(m log n) per request
+    // mmap: the input file is memory-mapped and searched in place, nothing is loaded on the heap (for multi-GB corpora)
+    private static final String COUNT_MODE = System.getProperty("search.mode", "substring");
+    // cross-check the selected counter against the substring counter on every word of the JMeter input file before serving
+    private static final boolean VERIFY = Boolean.getBoolean("search.verify");
+    // in substring mode, texts of at least this many characters are counted by several threads per request (see SubstringWordCounter)
+    private static final int PARALLEL_THRESHOLD = Integer.getInteger("search.parallel.threshold", 16 * 1024 * 1024);
+    private static final int PARALLEL_CHUNK_SIZE = Integer.getInteger("search.parallel.chunk", 1024 * 1024);
+    // when set, counts are served across every document of this directory, which is watched for changes (see CorpusManager)
+    private static final String CORPUS_DIRECTORY = System.getProperty("search.corpus.dir");
+    // in mmap mode, map a copy of every corpus document instead of the document itself: a full copy per reload, but
+    // documents rewritten in place (instead of replaced by a rename) no longer fail the requests until the reload
+    private static final boolean MMAP_SNAPSHOT = Boolean.getBoolean("search.mmap.snapshot");
+    // maximum number of words kept in the result cache in front of the counter, 0 disables the cache
+    private static final int CACHE_SIZE = Integer.getInteger("search.cache.size", 0);
     // Single threaded throughput: 598.114 requests/second
     // 8 Threaded throughput: 968.343 requests/second
 
     public static void main(String[] args) throws IOException {
-        String text = new String(Files.readAllBytes(Paths.get(INPUT_FILE)));
-        startServer(text);
+        startServer(loadWordCounter());
     }
 
-    private static void startServer(String text) throws IOException {
+    // Loads the input file and builds the configured counter, shared with the NioWordCountServer.
+    static WordCounter loadWordCounter() throws IOException {
+        WordCounter wordCounter;
+        if (CORPUS_DIRECTORY != null) {
+            return loadCorpus(Paths.get(CORPUS_DIRECTORY));
+        } else if (COUNT_MODE.equals("mmap")) {
+            MappedWordCounter mappedWordCounter = new MappedWordCounter(Paths.get(INPUT_FILE));
+            System.out.println(String.format("Mapped %,d bytes of %s in %d segment(s)",
+                    mappedWordCounter.getSize(), INPUT_FILE, mappedWordCounter.getNumberOfSegments()));
+            wordCounter = mappedWordCounter;
+            if (VERIFY) {
+                verifyAgainstSubstringCounter(readText(), wordCounter);
+            }
+        } else {
+            String text = readText();
+            wordCounter = createWordCounter(text);
+            if (VERIFY) {
+                verifyAgainstSubstringCounter(text, wordCounter);
+            }
+        }
+        if (CACHE_SIZE > 0) {
+            wordCounter = new CachingWordCounter(wordCounter, CACHE_SIZE);
+        }
+        return wordCounter;
+    }
+
+    private static WordCounter loadCorpus(Path directory) throws IOException {
+        CorpusManager corpusManager = new CorpusManager(directory, document -> COUNT_MODE.equals("mmap")
+                ? (MMAP_SNAPSHOT ? MappedWordCounter.snapshotOf(document) : new MappedWordCounter(document))
+                : createWordCounter(new String(Files.readAllBytes(document), StandardCharsets.UTF_8)));
+        System.out.println(String.format("Loaded %d document(s) from %s", corpusManager.getNumberOfDocuments(), directory));
+        WordCounter wordCounter = corpusManager;
+        if (CACHE_SIZE > 0) {
+            CachingWordCounter cache = new CachingWordCounter(corpusManager, CACHE_SIZE);
+            corpusManager.addReloadListener(cache::invalidateAll);
+            wordCounter = cache;
+        }
+        corpusManager.startWatching();
+        return wordCounter;
+    }
+
+    private static String readText() throws IOException {
+        return new String(Files.readAllBytes(Paths.get(INPUT_FILE)), StandardCharsets.UTF_8);
+    }
+
+    static WordCounter createWordCounter(String text) {
+        switch (COUNT_MODE) {
+            case "substring":
+                return new SubstringWordCounter(text, PARALLEL_THRESHOLD, PARALLEL_CHUNK_SIZE);
+            case "index":
+                WordIndex wordIndex = new WordIndex(text);
+                System.out.println(String.format("Word index built in %d ms: %,d words, %,d distinct, ~%,d KB",
+                        wordIndex.getBuildTimeMillis(), wordIndex.getTotalWords(), wordIndex.getDistinctWords(),
+                        wordIndex.estimateMemoryFootprintBytes() / 1024));
+                return wordIndex;
+            case "suffix":
+                SuffixArrayWordCounter suffixArray = new SuffixArrayWordCounter(text);
+                System.out.println(String.format("Suffix array built in %d ms: %,d suffixes, ~%,d KB",
+                        suffixArray.getBuildTimeMillis(), text.length(), suffixArray.estimateMemoryFootprintBytes() / 1024));
+                return suffixArray;
+            default:
+                throw new IllegalArgumentException("Unknown search.mode: " + COUNT_MODE);
+        }
+    }
+
+    static void verifyAgainstSubstringCounter(String text, WordCounter wordCounter) throws IOException {
+        WordCounter reference = new SubstringWordCounter(text);
+        List<String> words = Files.readAllLines(Paths.get(SEARCH_WORDS_FILE));
+        int mismatches = 0;
+        for (String word : words) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            long expected = reference.countWord(word);
+            long actual = wordCounter.countWord(word);
+            if (expected != actual) {
+                if (mismatches < 10) {
+                    System.out.println(String.format("Mismatch for '%s': substring=%d, %s=%d", word, expected, COUNT_MODE, actual));
+                }
+                mismatches++;
+            }
+        }
+        System.out.println(String.format("Verified %d words against the substring counter, %d mismatches", words.size(), mismatches));
+    }
+
+    private static void startServer(WordCounter wordCounter) throws IOException {
+        ServerMetrics metrics = new ServerMetrics();
+        AdaptiveConcurrencyLimiter limiter = LATENCY_TARGET_MILLIS > 0
+                ? new AdaptiveConcurrencyLimiter(NUMBER_OF_THREADS, 1, Math.max(NUMBER_OF_THREADS, QUEUE_CAPACITY), TimeUnit.MILLISECONDS.toNanos(LATENCY_TARGET_MILLIS))
+                : null;
+        AdmissionFilter admissionFilter = new AdmissionFilter(TimeUnit.MILLISECONDS.toNanos(QUEUE_WAIT_BUDGET_MILLIS), RETRY_AFTER_SECONDS, limiter);
         HttpServer server = HttpServer.create(new InetSocketAddress(8000), 0); // second parameter is the backlog size which defines the size of the queue for the http server request. We are going to keep it as 0 since all the request should end up in the thread pools queue instead.
-        server.createContext("/search", new WordCountHandler(text));
-        // Handling of the requests is delegated to a fixed-size pool of threads.
-        Executor executor = Executors.newFixedThreadPool(NUMBER_OF_THREADS); // this will schedule each incoming http request to a pool of worker threads
+        // filters run in order: rejected requests are still measured by the metrics filter
+        HttpContext searchContext = server.createContext("/search", new WordCountHandler(wordCounter));
+        searchContext.getFilters().add(metrics.filterFor("/search"));
+        searchContext.getFilters().add(admissionFilter);
+        HttpContext batchContext = server.createContext("/search/batch", new BatchWordCountHandler(wordCounter)); // the longest matching context wins, so this does not shadow /search
+        batchContext.getFilters().add(metrics.filterFor("/search/batch"));
+        batchContext.getFilters().add(admissionFilter);
+        server.createContext("/metrics", new MetricsHandler(metrics));
+        // Handling of the requests is delegated to the configured executor (by default a fixed-size pool of threads).
+        // The executor queue is bounded: tasks beyond its capacity run on separate reject threads, only to be rejected by the AdmissionFilter.
+        InstrumentedExecutor executor = new InstrumentedExecutor(EXECUTOR_STRATEGY.create(NUMBER_OF_THREADS), EXECUTOR_STRATEGY, QUEUE_CAPACITY, metrics.getQueueWait()); // this will schedule each incoming http request to the worker threads
         server.setExecutor(executor);
+        registerMetrics(metrics, executor, admissionFilter, wordCounter);
         server.start();
+        System.out.println(String.format("Serving on port 8000 with the %s executor (%d threads)", EXECUTOR_STRATEGY, NUMBER_OF_THREADS));
+        if (REPORT_INTERVAL_SECONDS > 0) {
+            startReporter(executor, wordCounter);
+        }
+    }
+
+    private static void registerMetrics(ServerMetrics metrics, InstrumentedExecutor executor, AdmissionFilter admissionFilter, WordCounter wordCounter) {
+        metrics.addGauge("executor_queued_tasks", "Tasks waiting for a worker thread", executor::getQueued);
+        metrics.addGauge("executor_active_tasks", "Tasks being run by a worker thread", executor::getActive);
+        metrics.addCounter("executor_completed_tasks_total", "Tasks completed by the worker threads", executor::getCompleted);
+        metrics.addCounter("executor_overflowed_tasks_total", "Tasks that arrived while the queue was full", executor::getOverflowed);
+        metrics.addCounter("admission_rejected_queue_full_total", "Requests rejected because the queue was full", admissionFilter::getRejectedQueueFull);
+        metrics.addCounter("admission_rejected_queue_wait_total", "Requests rejected because they waited longer than the budget", admissionFilter::getRejectedQueueWait);
+        if (admissionFilter.getLimiter() != null) {
+            AdaptiveConcurrencyLimiter limiter = admissionFilter.getLimiter();
+            metrics.addCounter("admission_rejected_concurrency_limit_total", "Requests rejected by the adaptive concurrency limit", admissionFilter::getRejectedConcurrencyLimit);
+            metrics.addGauge("admission_concurrency_limit", "Current adaptive concurrency limit", limiter::getLimit);
+            metrics.addGauge("admission_in_flight", "Searches currently admitted", limiter::getInFlight);
+        }
+        if (wordCounter instanceof CachingWordCounter) {
+            CachingWordCounter cache = (CachingWordCounter) wordCounter;
+            metrics.addGauge("search_cache_size", "Words in the result cache", cache::size);
+            metrics.addCounter("search_cache_hits_total", "Lookups answered by the cache", cache::getHits);
+            metrics.addCounter("search_cache_misses_total", "Lookups not answered by the cache", cache::getMisses);
+            metrics.addCounter("search_cache_coalesced_total", "Misses that waited for a concurrent computation of the same word", cache::getCoalesced);
+            metrics.addCounter("search_cache_evictions_total", "Words evicted from the cache", cache::getEvictions);
+        }
+    }
+
+    private static void startReporter(InstrumentedExecutor executor, WordCounter wordCounter) {
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "executor-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> {
+            System.out.println(String.format("[%s] queued=%d peakQueued=%d active=%d completed=%,d",
+                    executor.getStrategy(), executor.getQueued(), executor.resetPeakQueued(), executor.getActive(), executor.getCompleted()));
+            if (wordCounter instanceof CachingWordCounter) {
+                CachingWordCounter cache = (CachingWordCounter) wordCounter;
+                System.out.println(String.format("[cache] size=%d hits=%,d misses=%,d coalesced=%,d evictions=%,d",
+                        cache.size(), cache.getHits(), cache.getMisses(), cache.getCoalesced(), cache.getEvictions()));
+            }
+        }, REPORT_INTERVAL_SECONDS, REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
     }
 
-    private static class WordCountHandler implements HttpHandler {
-        private final String text;
+    // POST /search/batch with one word per line (commas are accepted too) in the body, answers one "word,count" line per word
+    // in the same order. All the words are counted together, with a single pass over the text for the counters that scan it.
+    private static class BatchWordCountHandler implements HttpHandler {
+        private static final int MAX_BODY_SIZE = 1024 * 1024;
+        private final WordCounter wordCounter;
 
-        public WordCountHandler(String text) {
-            this.text = text;
+        public BatchWordCountHandler(WordCounter wordCounter) {
+            this.wordCounter = wordCounter;
         }
 
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            String query = exchange.getRequestURI().getQuery();
-            String[] keyValue = query.split("=");
-            String action = keyValue[0];
-            String word = keyValue[1];
-            if (!action.equals("word")) {
-                exchange.sendResponseHeaders(400, 0);
+            if (!exchange.getRequestMethod().equals("POST")) {
+                exchange.getResponseHeaders().add("Allow", "POST");
+                exchange.sendResponseHeaders(405, -1);
+                exchange.close();
+                return;
+            }
+            byte[] body;
+            try (InputStream inputStream = exchange.getRequestBody()) {
+                body = inputStream.readNBytes(MAX_BODY_SIZE + 1);
+            }
+            if (body.length > MAX_BODY_SIZE) {
+                exchange.sendResponseHeaders(413, -1);
+                exchange.close();
                 return;
             }
 
-            long count = countWord(word);
-            byte[] response = Long.toString(count).getBytes();
+            List<String> words = new ArrayList<>();
+            for (String word : new String(body, StandardCharsets.UTF_8).split("[\\r\\n,]+")) {
+                word = word.trim();
+                if (!word.isEmpty()) {
+                    words.add(word);
+                }
+            }
+
+            long[] counts = wordCounter.countWords(words);
+            StringBuilder builder = new StringBuilder(words.size() * 16);
+            for (int i = 0; i < counts.length; i++) {
+                builder.append(words.get(i)).append(',').append(counts[i]).append('\n');
+            }
+            byte[] response = builder.toString().getBytes(StandardCharsets.UTF_8);
             exchange.sendResponseHeaders(200, response.length);
             OutputStream outputStream = exchange.getResponseBody();
             outputStream.write(response);
             outputStream.close();
         }
+    }
 
-        private long countWord(String word) {
-            long count = 0;
-            int index = 0;
+    // Serves the server metrics in the Prometheus text exposition format
+    private static class MetricsHandler implements HttpHandler {
+        private final ServerMetrics metrics;
 
-            while (index >= 0) {
-                index = text.indexOf(word, index);
-                if (index >= 0) {
-                    count++;
-                    index++;
-                }
-            }
-            return count;
+        public MetricsHandler(ServerMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            byte[] response = metrics.toPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; version=0.0.4");
+            exchange.sendResponseHeaders(200, response.length);
+            OutputStream outputStream = exchange.getResponseBody();
+            outputStream.write(response);
+            outputStream.close();
         }
     }
 }
@@ -0,0 +1,75 @@
+package httpserver;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Handles GET /search?word=<word> by answering the number of occurrences of the word as plain ASCII digits.
+// This is the hot path of the server, so it avoids allocating per request: the query is parsed by hand instead of with
+// a regex split, and the digits are written straight into a small local buffer, which needs no per-thread state (a
+// ThreadLocal would allocate it again for every request of a virtual thread anyway). Besides that buffer, the only
+// allocation left here is the word itself, which the WordCounter needs as a String.
+// benchmarks/httpserver/WordCountHandlerBenchmark measures what handle allocates per request.
+public class WordCountHandler implements HttpHandler {
+    private static final String WORD_PARAMETER = "word=";
+    private static final int MAX_DIGITS = 20; // Long.MIN_VALUE has 19 digits and a sign
+
+    private final WordCounter wordCounter;
+
+    public WordCountHandler(WordCounter wordCounter) {
+        this.wordCounter = wordCounter;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        String word = parseWord(exchange.getRequestURI().getQuery());
+        if (word == null) {
+            exchange.sendResponseHeaders(400, -1);
+            exchange.close();
+            return;
+        }
+
+        long count = wordCounter.countWord(word);
+        byte[] response = new byte[MAX_DIGITS];
+        int offset = writeDecimal(count, response);
+        exchange.sendResponseHeaders(200, response.length - offset);
+        OutputStream outputStream = exchange.getResponseBody();
+        outputStream.write(response, offset, response.length - offset);
+        outputStream.close();
+    }
+
+    /**
+     * Returns the value of a query of the form word=value (up to the next '&' or '='), or null if the query is not one.
+     */
+    static String parseWord(String query) {
+        if (query == null || !query.startsWith(WORD_PARAMETER)) {
+            return null;
+        }
+        int start = WORD_PARAMETER.length();
+        int end = start;
+        while (end < query.length() && query.charAt(end) != '&' && query.charAt(end) != '=') {
+            end++;
+        }
+        return end > start ? query.substring(start, end) : null;
+    }
+
+    /**
+     * Writes the ASCII digits of the value right aligned at the end of the buffer and returns the offset of the first one.
+     */
+    static int writeDecimal(long value, byte[] buffer) {
+        int position = buffer.length;
+        boolean negative = value < 0;
+        // work on the negative value so Long.MIN_VALUE does not overflow
+        long remaining = negative ? value : -value;
+        do {
+            buffer[--position] = (byte) ('0' - remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        if (negative) {
+            buffer[--position] = '-';
+        }
+        return position;
+    }
+}
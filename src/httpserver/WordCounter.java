@@ -0,0 +1,21 @@
+package httpserver;
+
+import java.util.List;
+
+// Strategy used by the WordCountHandler to answer /search?word= queries.
+// Implementations are built once at startup and then shared by all the worker threads, so they must be thread safe.
+public interface WordCounter {
+    long countWord(String word);
+
+    /**
+     * Counts every word of the batch, returning the counts in the same order as the words.
+     * Counters that scan the text override this to count the whole batch in a single pass.
+     */
+    default long[] countWords(List<String> words) {
+        long[] counts = new long[words.size()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = countWord(words.get(i));
+        }
+        return counts;
+    }
+}
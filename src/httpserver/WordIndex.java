@@ -0,0 +1,109 @@
+package httpserver;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Inverted index built once at startup: the text is tokenized into whole words (maximal runs of letters or digits) and every
+// word is mapped to the positions it starts at. A query then becomes a single hash lookup instead of a scan over the whole text.
+// Note that this counts whole, case sensitive words: "war" does not match inside "warm" like it does with the SubstringWordCounter.
+public class WordIndex implements WordCounter {
+    private static final int[] NO_POSITIONS = new int[0];
+
+    private final Map<String, int[]> positionsByWord; // never modified after construction, so it is safe to read from many threads
+    private final long buildTimeMillis;
+    private final long totalWords;
+
+    public WordIndex(String text) {
+        long startTime = System.currentTimeMillis();
+        Map<String, PositionList> positionLists = new HashMap<>();
+        long words = 0;
+        int length = text.length();
+        int index = 0;
+
+        while (index < length) {
+            while (index < length && !isWordCharacter(text.charAt(index))) {
+                index++;
+            }
+            int wordStart = index;
+            while (index < length && isWordCharacter(text.charAt(index))) {
+                index++;
+            }
+            if (index > wordStart) {
+                positionLists.computeIfAbsent(text.substring(wordStart, index), key -> new PositionList()).add(wordStart);
+                words++;
+            }
+        }
+
+        // trim every growable list down to an exact sized int[] so the index does not keep the slack around
+        Map<String, int[]> compacted = new HashMap<>(positionLists.size() * 4 / 3 + 1);
+        for (Map.Entry<String, PositionList> entry : positionLists.entrySet()) {
+            compacted.put(entry.getKey(), entry.getValue().toArray());
+        }
+
+        this.positionsByWord = compacted;
+        this.totalWords = words;
+        this.buildTimeMillis = System.currentTimeMillis() - startTime;
+    }
+
+    @Override
+    public long countWord(String word) {
+        return getPositions(word).length;
+    }
+
+    /**
+     * Returns the (ascending) start offsets of every occurrence of the given word in the text.
+     * The returned array is shared and must not be modified by the caller.
+     */
+    public int[] getPositions(String word) {
+        return positionsByWord.getOrDefault(word, NO_POSITIONS);
+    }
+
+    public int getDistinctWords() {
+        return positionsByWord.size();
+    }
+
+    public long getTotalWords() {
+        return totalWords;
+    }
+
+    public long getBuildTimeMillis() {
+        return buildTimeMillis;
+    }
+
+    /**
+     * Rough estimate of the heap retained by the index, assuming a 64-bit JVM with compressed oops and compact strings.
+     */
+    public long estimateMemoryFootprintBytes() {
+        long bytes = 16 + 16L * (positionsByWord.size() * 4 / 3 + 1); // HashMap + its table
+        for (Map.Entry<String, int[]> entry : positionsByWord.entrySet()) {
+            bytes += 32; // HashMap.Node
+            bytes += 24 + 16 + entry.getKey().length(); // String + its byte[] (latin1)
+            bytes += 16 + 4L * entry.getValue().length; // int[] of positions
+        }
+        return bytes;
+    }
+
+    private static boolean isWordCharacter(char c) {
+        return Character.isLetterOrDigit(c);
+    }
+
+    private static class PositionList {
+        private int[] positions = new int[2];
+        private int size = 0;
+
+        public void add(int position) {
+            if (size == positions.length) {
+                int[] grown = new int[size * 2];
+                System.arraycopy(positions, 0, grown, 0, size);
+                positions = grown;
+            }
+            positions[size++] = position;
+        }
+
+        public int[] toArray() {
+            int[] result = new int[size];
+            System.arraycopy(positions, 0, result, 0, size);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package imagerework;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Recolors every JPEG of a directory with three pools of threads connected by bounded queues:
+//   file names -> [decode] -> decoded images -> [transform] -> recolored images -> [encode] -> output directory
+// - decoding and encoding (ImageIO) are as slow as the recoloring itself, so all three stages run at the same time
+// - every stage has its own number of threads, so the slowest one can be given more
+// - the queues are bounded: when a stage falls behind, the one before it blocks instead of piling up decoded images
+//   (about 50MB each for the sample image) until the heap runs out
+// - the end of the input travels down the pipeline as a poison pill, sent by the last worker of a stage to every
+//   worker of the next one
+// Prints, every few seconds and at the end, the throughput and utilization of every stage and the occupancy of the
+// queue in front of it: a full queue points at a slow stage, an empty one at a starved stage.
+//
+// Usage: BatchImageProcessor [inputDirectory] [outputDirectory] [decodeThreads] [transformThreads] [encodeThreads]
+public class BatchImageProcessor {
+    private static final String INPUT_DIRECTORY = "./resources";
+    private static final String OUTPUT_DIRECTORY = "./out/batch";
+    private static final int QUEUE_CAPACITY_PER_THREAD = 2;
+    private static final long SAMPLE_INTERVAL_MILLIS = 100;
+    private static final long REPORT_INTERVAL_MILLIS = 5000;
+
+    private static final Job POISON = new Job(null);
+
+    private final Path outputDirectory;
+    private final Stage decode;
+    private final Stage transform;
+    private final Stage encode;
+
+    public BatchImageProcessor(Path outputDirectory, int decodeThreads, int transformThreads, int encodeThreads) {
+        this.outputDirectory = outputDirectory;
+        this.encode = new Stage("encode", encodeThreads, null, this::encode);
+        this.transform = new Stage("transform", transformThreads, encode, BatchImageProcessor::transform);
+        this.decode = new Stage("decode", decodeThreads, transform, BatchImageProcessor::decode);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path inputDirectory = Paths.get(args.length > 0 ? args[0] : INPUT_DIRECTORY);
+        Path outputDirectory = Paths.get(args.length > 1 ? args[1] : OUTPUT_DIRECTORY);
+        int decodeThreads = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        int transformThreads = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+        int encodeThreads = args.length > 4 ? Integer.parseInt(args[4]) : 2;
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(inputDirectory)) {
+            files = stream.filter(BatchImageProcessor::isJpeg).sorted().collect(Collectors.toList());
+        }
+        Files.createDirectories(outputDirectory);
+        System.out.println(String.format("Processing %d images from %s into %s (decode %d, transform %d, encode %d threads)",
+                files.size(), inputDirectory, outputDirectory, decodeThreads, transformThreads, encodeThreads));
+
+        BatchImageProcessor processor = new BatchImageProcessor(outputDirectory, decodeThreads, transformThreads, encodeThreads);
+        processor.process(files);
+    }
+
+    public void process(List<Path> files) throws InterruptedException {
+        long startTime = System.nanoTime();
+        List<Stage> stages = List.of(decode, transform, encode);
+        for (Stage stage : stages) {
+            stage.start();
+        }
+        Thread sampler = startSampler(stages, startTime);
+
+        // the producer is throttled by the first queue like every other stage
+        for (Path file : files) {
+            if (!decode.accept(new Job(file))) {
+                break;
+            }
+        }
+        for (int i = 0; i < decode.threads; i++) {
+            decode.accept(POISON);
+        }
+        for (Stage stage : stages) {
+            stage.join();
+        }
+        sampler.interrupt();
+        sampler.join();
+
+        System.out.println("Done:");
+        printReport(stages, System.nanoTime() - startTime);
+    }
+
+    private static Job decode(Job job) throws IOException {
+        job.originalImage = ImageIO.read(job.file.toFile());
+        if (job.originalImage == null) {
+            throw new IOException("No image reader for " + job.file);
+        }
+        return job;
+    }
+
+    private static Job transform(Job job) {
+        BufferedImage originalImage = job.originalImage;
+        job.resultImage = new BufferedImage(originalImage.getWidth(), originalImage.getHeight(), BufferedImage.TYPE_INT_RGB);
+        DirectRasterRecolor.recolorRegion(originalImage, job.resultImage, 0, 0, originalImage.getWidth(), originalImage.getHeight());
+        job.originalImage = null; // nothing holds on to the source while the result waits for the encoder
+        return job;
+    }
+
+    private Job encode(Job job) throws IOException {
+        ImageIO.write(job.resultImage, "jpg", outputDirectory.resolve(job.file.getFileName()).toFile());
+        job.resultImage = null;
+        return job;
+    }
+
+    // Samples the queue sizes often enough to get a meaningful average, and prints a report every few seconds
+    private Thread startSampler(List<Stage> stages, long startTime) {
+        Thread sampler = new Thread(() -> {
+            long nextReport = System.nanoTime() + REPORT_INTERVAL_MILLIS * 1_000_000;
+            try {
+                while (true) {
+                    Thread.sleep(SAMPLE_INTERVAL_MILLIS);
+                    for (Stage stage : stages) {
+                        stage.sampleQueue();
+                    }
+                    if (System.nanoTime() >= nextReport) {
+                        printReport(stages, System.nanoTime() - startTime);
+                        nextReport += REPORT_INTERVAL_MILLIS * 1_000_000;
+                    }
+                }
+            } catch (InterruptedException e) {
+                // done
+            }
+        }, "batch-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+        return sampler;
+    }
+
+    private static void printReport(List<Stage> stages, long elapsedNanos) {
+        double elapsedSeconds = elapsedNanos / 1_000_000_000.0;
+        for (Stage stage : stages) {
+            long processed = stage.processed.sum();
+            System.out.println(String.format(
+                    "  %-9s %5d done %3d failed  %6.2f images/s  %5.1f ms/image  %3.0f%% busy  queue avg %4.1f max %2d of %d",
+                    stage.name, processed, stage.failed.sum(), processed / elapsedSeconds,
+                    processed == 0 ? 0 : stage.busyNanos.sum() / 1_000_000.0 / processed,
+                    100.0 * stage.busyNanos.sum() / (elapsedNanos * stage.threads),
+                    stage.averageQueueSize(), stage.maxQueueSize.get(), stage.queueCapacity));
+        }
+    }
+
+    private static boolean isJpeg(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".jpg") || name.endsWith(".jpeg");
+    }
+
+    private interface Work {
+        Job process(Job job) throws IOException;
+    }
+
+    // One image travelling down the pipeline
+    private static class Job {
+        private final Path file;
+        private BufferedImage originalImage;
+        private BufferedImage resultImage;
+
+        public Job(Path file) {
+            this.file = file;
+        }
+    }
+
+    private static class Stage {
+        private final String name;
+        private final int threads;
+        private final Stage next;
+        private final Work work;
+        private final int queueCapacity;
+        private final BlockingQueue<Job> input;
+        private final List<Thread> workers = new ArrayList<>();
+        private final AtomicInteger runningWorkers;
+
+        private final LongAdder processed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+        private final AtomicLong queueSizeSum = new AtomicLong();
+        private final AtomicLong queueSamples = new AtomicLong();
+        private final AtomicInteger maxQueueSize = new AtomicInteger();
+
+        public Stage(String name, int threads, Stage next, Work work) {
+            this.name = name;
+            this.threads = threads;
+            this.next = next;
+            this.work = work;
+            this.queueCapacity = threads * QUEUE_CAPACITY_PER_THREAD;
+            this.input = new ArrayBlockingQueue<>(queueCapacity);
+            this.runningWorkers = new AtomicInteger(threads);
+        }
+
+        public void start() {
+            for (int i = 0; i < threads; i++) {
+                Thread worker = new Thread(this::run, name + "-" + i);
+                workers.add(worker);
+                worker.start();
+            }
+        }
+
+        public void join() throws InterruptedException {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+
+        private void run() {
+            try {
+                while (true) {
+                    Job job = input.take();
+                    if (job == POISON) {
+                        break;
+                    }
+                    long startTime = System.nanoTime();
+                    try {
+                        job = work.process(job);
+                    } catch (IOException | RuntimeException e) {
+                        failed.increment();
+                        System.err.println(name + " failed for " + job.file + ": " + e);
+                        continue;
+                    } finally {
+                        busyNanos.add(System.nanoTime() - startTime);
+                    }
+                    processed.increment();
+                    if (next != null) {
+                        next.accept(job); // blocks while the next stage is behind: the backpressure
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                // the last worker out, even one killed by an Error such as an OutOfMemoryError on a huge image, tells every
+                // worker of the next stage that there is nothing more to come, or the pipeline would never finish
+                if (runningWorkers.decrementAndGet() == 0 && next != null) {
+                    sendPoisonToNext();
+                }
+            }
+        }
+
+        private void sendPoisonToNext() {
+            try {
+                for (int i = 0; i < next.threads; i++) {
+                    next.accept(POISON);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Hands a job (or the poison) to this stage, blocking while its queue is full. Returns false, dropping the job,
+        // once every worker of this stage has died: nobody would ever take it, and the sender would block forever.
+        public boolean accept(Job job) throws InterruptedException {
+            while (!input.offer(job, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (runningWorkers.get() == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public void sampleQueue() {
+            int size = input.size();
+            queueSizeSum.addAndGet(size);
+            queueSamples.incrementAndGet();
+            maxQueueSize.accumulateAndGet(size, Math::max);
+        }
+
+        public double averageQueueSize() {
+            long samples = queueSamples.get();
+            return samples == 0 ? 0 : (double) queueSizeSum.get() / samples;
+        }
+    }
+}
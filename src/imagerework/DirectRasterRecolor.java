@@ -0,0 +1,133 @@
+package imagerework;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+// Fast path for recoloring, and for any other per-pixel filter: instead of going through BufferedImage.getRGB/setRGB for
+// every pixel (a color model lookup, virtual calls and, for setRGB, a freshly allocated array per pixel), it reads and
+// writes the primitive arrays behind the rasters directly. Supported are the common layouts: packed int RGB/ARGB sources
+// (what most code creates) and 3-byte BGR sources (what the JPEG decoder produces), written into packed int RGB/ARGB results.
+// Any other color model (indexed, gray, premultiplied, custom...) falls back to the generic per-pixel path.
+// The recolor filter itself runs a row at a time through a RecolorKernel: the SIMD one when the jdk.incubator.vector
+// module is available (java --add-modules jdk.incubator.vector, unless -Dimage.vector=false), the scalar one otherwise.
+public class DirectRasterRecolor {
+    private static final RecolorKernel SCALAR_KERNEL = (source, sourceIndex, result, resultIndex, length, resultMask) -> {
+        for (int i = 0; i < length; i++) {
+            result[resultIndex + i] = ImageEditor.recolorRGB(source[sourceIndex + i]) & resultMask;
+        }
+    };
+    private static final RecolorKernel KERNEL = selectKernel();
+
+    public static boolean isSupported(BufferedImage originalImage, BufferedImage resultImage) {
+        int sourceType = originalImage.getType();
+        int resultType = resultImage.getType();
+        return (sourceType == BufferedImage.TYPE_INT_RGB || sourceType == BufferedImage.TYPE_INT_ARGB || sourceType == BufferedImage.TYPE_3BYTE_BGR)
+                && (resultType == BufferedImage.TYPE_INT_RGB || resultType == BufferedImage.TYPE_INT_ARGB);
+    }
+
+    public static boolean isVectorized() {
+        return KERNEL != SCALAR_KERNEL;
+    }
+
+    /**
+     * Recolors the given region, through the raster arrays when both images are supported, pixel by pixel otherwise.
+     */
+    public static void recolorRegion(BufferedImage originalImage, BufferedImage resultImage, int left, int top, int width, int height) {
+        filterRegion(originalImage, resultImage, left, top, width, height, PixelFilters.recolor());
+    }
+
+    /**
+     * Applies the filter to the given region, through the raster arrays when both images are supported, pixel by pixel otherwise.
+     */
+    public static void filterRegion(BufferedImage originalImage, BufferedImage resultImage, int left, int top, int width, int height,
+                                    PixelFilter filter) {
+        int right = Math.min(left + width, originalImage.getWidth());
+        int bottom = Math.min(top + height, originalImage.getHeight());
+        if (!isSupported(originalImage, resultImage)) {
+            for (int y = top; y < bottom; y++) {
+                for (int x = left; x < right; x++) {
+                    ImageEditor.setRGB(resultImage, x, y, filter.apply(originalImage.getRGB(x, y)));
+                }
+            }
+            return;
+        }
+        // the recolor filter goes through the kernel, which may be vectorized; any other filter is called pixel by pixel
+        RecolorKernel kernel = filter == PixelFilters.recolor() ? KERNEL : null;
+
+        Raster resultRaster = resultImage.getRaster();
+        SinglePixelPackedSampleModel resultModel = (SinglePixelPackedSampleModel) resultRaster.getSampleModel();
+        int[] resultPixels = ((DataBufferInt) resultRaster.getDataBuffer()).getData();
+        int resultStride = resultModel.getScanlineStride();
+        int resultBase = resultRaster.getDataBuffer().getOffset()
+                - resultRaster.getSampleModelTranslateY() * resultStride - resultRaster.getSampleModelTranslateX();
+        // an image without alpha only stores the 24 color bits, exactly like setRGB does through its color model
+        int resultMask = resultImage.getColorModel().hasAlpha() ? 0xFFFFFFFF : 0x00FFFFFF;
+
+        Raster sourceRaster = originalImage.getRaster();
+        if (originalImage.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            PixelInterleavedSampleModel sourceModel = (PixelInterleavedSampleModel) sourceRaster.getSampleModel();
+            byte[] sourceBytes = ((DataBufferByte) sourceRaster.getDataBuffer()).getData();
+            int pixelStride = sourceModel.getPixelStride();
+            int sourceStride = sourceModel.getScanlineStride();
+            int[] bandOffsets = sourceModel.getBandOffsets(); // red, green, blue
+            int redOffset = bandOffsets[0];
+            int greenOffset = bandOffsets[1];
+            int blueOffset = bandOffsets[2];
+            int sourceBase = sourceRaster.getDataBuffer().getOffset()
+                    - sourceRaster.getSampleModelTranslateY() * sourceStride - sourceRaster.getSampleModelTranslateX() * pixelStride;
+            for (int y = top; y < bottom; y++) {
+                int sourceIndex = sourceBase + y * sourceStride + left * pixelStride;
+                int rowStart = resultBase + y * resultStride + left;
+                int resultIndex = rowStart;
+                for (int x = left; x < right; x++) {
+                    int rgb = 0xFF000000 // opaque, like getRGB: the filters get 0xAARRGGBB
+                            | (sourceBytes[sourceIndex + redOffset] & 0xFF) << 16
+                            | (sourceBytes[sourceIndex + greenOffset] & 0xFF) << 8
+                            | (sourceBytes[sourceIndex + blueOffset] & 0xFF);
+                    resultPixels[resultIndex++] = kernel != null ? rgb : filter.apply(rgb) & resultMask;
+                    sourceIndex += pixelStride;
+                }
+                if (kernel != null) {
+                    // the row was unpacked into the result, the kernel recolors it in place while it is still in the cache
+                    kernel.recolor(resultPixels, rowStart, resultPixels, rowStart, right - left, resultMask);
+                }
+            }
+        } else {
+            SinglePixelPackedSampleModel sourceModel = (SinglePixelPackedSampleModel) sourceRaster.getSampleModel();
+            int[] sourcePixels = ((DataBufferInt) sourceRaster.getDataBuffer()).getData();
+            int sourceStride = sourceModel.getScanlineStride();
+            int sourceBase = sourceRaster.getDataBuffer().getOffset()
+                    - sourceRaster.getSampleModelTranslateY() * sourceStride - sourceRaster.getSampleModelTranslateX();
+            // an RGB source stores no alpha (the top byte is undefined): the filters get it opaque, like from getRGB
+            int sourceAlpha = originalImage.getColorModel().hasAlpha() ? 0 : 0xFF000000;
+            for (int y = top; y < bottom; y++) {
+                int sourceIndex = sourceBase + y * sourceStride + left;
+                int resultIndex = resultBase + y * resultStride + left;
+                if (kernel != null) {
+                    kernel.recolor(sourcePixels, sourceIndex, resultPixels, resultIndex, right - left, resultMask);
+                    continue;
+                }
+                for (int x = left; x < right; x++) {
+                    resultPixels[resultIndex++] = filter.apply(sourcePixels[sourceIndex++] | sourceAlpha) & resultMask;
+                }
+            }
+        }
+    }
+
+    // The vector kernel is only loaded when its module is in the boot layer, otherwise loading the class would fail
+    private static RecolorKernel selectKernel() {
+        if (!Boolean.parseBoolean(System.getProperty("image.vector", "true"))
+                || !ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            return SCALAR_KERNEL;
+        }
+        try {
+            return (RecolorKernel) Class.forName("imagerework.VectorRecolorKernel").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return SCALAR_KERNEL;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package imagerework;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+// A chain of per-pixel filters applied in one pass: every pixel is read once, goes through all the filters while it is
+// in a register and is written once, instead of one full sweep over the image (and one intermediate image) per filter.
+// The result is the same as applying the filters one after the other, since none of them looks at the neighbour pixels.
+public class FilterPipeline implements PixelFilter {
+    private final PixelFilter[] filters;
+
+    private FilterPipeline(List<PixelFilter> filters) {
+        this.filters = filters.toArray(new PixelFilter[0]);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public int apply(int rgb) {
+        for (PixelFilter filter : filters) {
+            rgb = filter.apply(rgb);
+        }
+        return rgb;
+    }
+
+    public void apply(BufferedImage originalImage, BufferedImage resultImage) {
+        apply(originalImage, resultImage, 0, 0, originalImage.getWidth(), originalImage.getHeight());
+    }
+
+    public void apply(BufferedImage originalImage, BufferedImage resultImage, int leftCorner, int topCorner, int width, int height) {
+        DirectRasterRecolor.filterRegion(originalImage, resultImage, leftCorner, topCorner, width, height, this);
+    }
+
+    public static class Builder {
+        private final List<PixelFilter> filters = new ArrayList<>();
+
+        public Builder add(PixelFilter filter) {
+            // a nested pipeline is flattened, so it costs no extra call per pixel
+            if (filter instanceof FilterPipeline) {
+                for (PixelFilter nested : ((FilterPipeline) filter).filters) {
+                    filters.add(nested);
+                }
+            } else {
+                filters.add(filter);
+            }
+            return this;
+        }
+
+        public FilterPipeline build() {
+            return new FilterPipeline(filters);
+        }
+    }
+}
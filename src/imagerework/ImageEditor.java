@@ -10,14 +10,20 @@ import java.util.List;
 public class ImageEditor {
     public static final String SOURCE_FILE = "./resources/many-flowers.jpg";
     public static final String DESTINATION_FILE = "./out/many-flowers.jpg";
+    // single: recolorSingleThreaded (Overall duration: 1168ms)
+    // threads: recolorMultiThreaded, one horizontal band per thread (Overall duration: 284)
+    // tiled: TiledRecolorEngine, cache sized row-major tiles on a work-stealing pool
+    // pipeline: FilterPipeline, several per-pixel filters (recolor, brightness, red/blue swap) fused into a single pass
+    private static final String MODE = System.getProperty("image.mode", "threads");
+    private static final int NUMBER_OF_THREADS = 8;
 
     public static void main(String[] args) throws IOException {
         BufferedImage originalImage = ImageIO.read(new File(SOURCE_FILE));
         BufferedImage resultImage = new BufferedImage(originalImage.getWidth(), originalImage.getHeight(), BufferedImage.TYPE_INT_RGB);
 
+        // a single cold run, for warmed up numbers per image size and thread count see benchmarks/ (mvn -P jmh package)
         long startTime = System.currentTimeMillis();
-//        recolorSingleThreaded(originalImage, resultImage); // Overall duration: 1168ms
-        recolorMultiThreaded(originalImage, resultImage, 8); // Overall duration: 284
+        recolor(originalImage, resultImage);
         long endTime = System.currentTimeMillis();
 
         long duration = endTime - startTime;
@@ -27,6 +33,32 @@ public class ImageEditor {
         System.out.println("Overall duration: " + duration);
     }
 
+    private static void recolor(BufferedImage originalImage, BufferedImage resultImage) {
+        switch (MODE) {
+            case "single":
+                recolorSingleThreaded(originalImage, resultImage);
+                break;
+            case "threads":
+                recolorMultiThreaded(originalImage, resultImage, NUMBER_OF_THREADS);
+                break;
+            case "tiled":
+                try (TiledRecolorEngine engine = new TiledRecolorEngine(NUMBER_OF_THREADS)) {
+                    engine.recolor(originalImage, resultImage);
+                }
+                break;
+            case "pipeline":
+                FilterPipeline.builder()
+                        .add(PixelFilters.recolor())
+                        .add(PixelFilters.brightness(20))
+                        .add(PixelFilters.swapRedAndBlue())
+                        .build()
+                        .apply(originalImage, resultImage);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown image.mode: " + MODE);
+        }
+    }
+
     public static void recolorMultiThreaded(BufferedImage originalImage, BufferedImage resultImage, int numberOfThreads) {
         List<Thread> threads = new ArrayList<>();
         int width = originalImage.getWidth();
@@ -34,10 +66,12 @@ public class ImageEditor {
 
         for (int i = 0; i < numberOfThreads; i++) {
             final int threadMultiplier = i;
+            // the last thread also takes the rows left over when the height is not a multiple of the number of threads
+            final int threadHeight = i == numberOfThreads - 1 ? originalImage.getHeight() - i * height : height;
             Thread thread = new Thread(() -> {
                 int leftCorner = 0;
                 int topCorner = threadMultiplier * height;
-                recolorImage(originalImage, resultImage, leftCorner, topCorner, width, height);
+                recolorImage(originalImage, resultImage, leftCorner, topCorner, width, threadHeight);
             });
             threads.add(thread);
         }
@@ -69,7 +103,12 @@ public class ImageEditor {
 
     public static void recolorPixel(BufferedImage originalImage, BufferedImage resultImage, int x, int y) {
         int rgb = originalImage.getRGB(x, y);
+        int newRGB = recolorRGB(rgb);
+        setRGB(resultImage, x, y, newRGB);
+    }
 
+    // The transform itself: shades of gray get more red and less green and blue, every other color is kept as is
+    public static int recolorRGB(int rgb) {
         int red = getRed(rgb);
         int green = getGreen(rgb);
         int blue = getBlue(rgb);
@@ -84,8 +123,7 @@ public class ImageEditor {
             newBlue = Math.max(0, blue - 20);
         }
 
-        int newRGB = createRGBFromColors(newRed, newGreen, newBlue);
-        setRGB(resultImage, x, y, newRGB);
+        return createRGBFromColors(newRed, newGreen, newBlue);
     }
 
     public static void setRGB(BufferedImage image, int x, int y, int rgb) {
@@ -0,0 +1,254 @@
+package imagerework;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Keeps the recolored result of an image that changes a little at a time (overlays, edits, a live preview) and only
+// recolors the tiles that changed, instead of every pixel for every change:
+// - markDirty(region): the caller knows what it changed, update(source) recolors just the tiles the regions intersect
+// - submitFrame(frame): the caller does not know, every tile of the new frame is hashed and only the tiles whose hash
+//   differs from the one of the previous frame are recolored (plus the ones marked dirty)
+// Hashing a tile reads it once with no per-pixel transform, so it is much cheaper than recoloring it. It is not a
+// cryptographic hash: two different tiles can have the same 64-bit hash, which is very unlikely for real edits, and
+// then the stale tile is kept until it changes again. Callers that cannot accept that use markDirty.
+// The result image is kept between calls, the tiles not recolored keep their previous pixels.
+// markDirty can be called from any thread; update and submitFrame from one thread at a time, the one reading the result.
+public class IncrementalImageEditor implements AutoCloseable {
+    public static final int DEFAULT_TILE_SIZE = 64;
+    private static final VarHandle BYTES_AS_LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final ForkJoinPool pool;
+    private final PixelFilter filter;
+    private final int width;
+    private final int height;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int tilesPerRow;
+    private final int tileCount;
+    private final BufferedImage resultImage;
+    private final long[] tileHashes;
+    private final BitSet dirtyTiles; // guarded by this, tiles never recolored stay dirty so their hash is never compared
+
+    public IncrementalImageEditor(int width, int height, int numberOfThreads) {
+        this(width, height, numberOfThreads, DEFAULT_TILE_SIZE, DEFAULT_TILE_SIZE, PixelFilters.recolor());
+    }
+
+    public IncrementalImageEditor(int width, int height, int numberOfThreads, int tileWidth, int tileHeight, PixelFilter filter) {
+        if (tileWidth <= 0 || tileHeight <= 0) {
+            throw new IllegalArgumentException("tile dimensions must be positive");
+        }
+        this.pool = new ForkJoinPool(numberOfThreads);
+        this.filter = filter;
+        this.width = width;
+        this.height = height;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.tilesPerRow = (width + tileWidth - 1) / tileWidth;
+        this.tileCount = tilesPerRow * ((height + tileHeight - 1) / tileHeight);
+        this.resultImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        this.tileHashes = new long[tileCount];
+        this.dirtyTiles = new BitSet(tileCount);
+        this.dirtyTiles.set(0, tileCount); // nothing was recolored yet
+    }
+
+    public BufferedImage getResultImage() {
+        return resultImage;
+    }
+
+    public int getTileCount() {
+        return tileCount;
+    }
+
+    /**
+     * Marks the tiles intersecting the region (in image coordinates) to be recolored by the next update or submitFrame.
+     */
+    public void markDirty(Rectangle region) {
+        Rectangle clipped = region.intersection(new Rectangle(0, 0, width, height));
+        if (clipped.isEmpty()) {
+            return;
+        }
+        int firstColumn = clipped.x / tileWidth;
+        int lastColumn = (clipped.x + clipped.width - 1) / tileWidth;
+        int firstRow = clipped.y / tileHeight;
+        int lastRow = (clipped.y + clipped.height - 1) / tileHeight;
+        synchronized (this) {
+            for (int row = firstRow; row <= lastRow; row++) {
+                dirtyTiles.set(row * tilesPerRow + firstColumn, row * tilesPerRow + lastColumn + 1);
+            }
+        }
+    }
+
+    /**
+     * Recolors the tiles marked dirty since the last call from the given source and returns how many there were.
+     */
+    public int update(BufferedImage source) {
+        checkSize(source);
+        int[] tiles = takeDirtyTiles().stream().toArray();
+        pool.invoke(new TileTask(source, tiles, false, 0, tiles.length));
+        return tiles.length;
+    }
+
+    /**
+     * Takes a whole new frame: recolors the tiles whose content changed since the previous frame, and the ones marked
+     * dirty, and returns how many tiles were recolored.
+     */
+    public int submitFrame(BufferedImage frame) {
+        checkSize(frame);
+        BitSet forced = takeDirtyTiles();
+        int[] tiles = new int[tileCount];
+        Arrays.setAll(tiles, tile -> forced.get(tile) ? -tile - 1 : tile); // negative: recolor without comparing
+        TileTask task = new TileTask(frame, tiles, true, 0, tiles.length);
+        pool.invoke(task);
+        return task.getRecolored();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private synchronized BitSet takeDirtyTiles() {
+        BitSet tiles = (BitSet) dirtyTiles.clone();
+        dirtyTiles.clear();
+        return tiles;
+    }
+
+    private void checkSize(BufferedImage source) {
+        if (source.getWidth() != width || source.getHeight() != height) {
+            throw new IllegalArgumentException(String.format("expected a %dx%d image, got %dx%d", width, height, source.getWidth(), source.getHeight()));
+        }
+    }
+
+    // Processes the tiles [first, last) of the list, splitting it in halves down to a few tiles.
+    // Without comparing, every tile is recolored and its hash updated. When comparing, a tile is only recolored when its
+    // hash changed, except for the tiles given as -tile - 1 which are always recolored.
+    private class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int TILES_PER_TASK = 4;
+
+        private final BufferedImage source;
+        private final int[] tiles;
+        private final boolean compare;
+        private final int first;
+        private final int last;
+        private int recolored = 0;
+
+        public TileTask(BufferedImage source, int[] tiles, boolean compare, int first, int last) {
+            this.source = source;
+            this.tiles = tiles;
+            this.compare = compare;
+            this.first = first;
+            this.last = last;
+        }
+
+        public int getRecolored() {
+            return recolored;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first <= TILES_PER_TASK) {
+                for (int i = first; i < last; i++) {
+                    processTile(tiles[i]);
+                }
+                return;
+            }
+            int middle = (first + last) >>> 1;
+            TileTask left = new TileTask(source, tiles, compare, first, middle);
+            TileTask right = new TileTask(source, tiles, compare, middle, last);
+            invokeAll(left, right);
+            recolored = left.recolored + right.recolored;
+        }
+
+        private void processTile(int entry) {
+            boolean forced = !compare || entry < 0;
+            int tile = entry < 0 ? -entry - 1 : entry;
+            int left = (tile % tilesPerRow) * tileWidth;
+            int top = (tile / tilesPerRow) * tileHeight;
+            int right = Math.min(left + tileWidth, width);
+            int bottom = Math.min(top + tileHeight, height);
+            long hash = hashTile(source, left, top, right, bottom);
+            if (forced || hash != tileHashes[tile]) {
+                DirectRasterRecolor.filterRegion(source, resultImage, left, top, tileWidth, tileHeight, filter);
+                tileHashes[tile] = hash;
+                recolored++;
+            }
+        }
+    }
+
+    // 64-bit hash of the pixels of a tile, read straight from the raster arrays for the layouts DirectRasterRecolor
+    // supports. It hashes the stored samples, so the same picture stored in two different layouts hashes differently,
+    // which at worst recolors a tile that did not need it.
+    static long hashTile(BufferedImage image, int left, int top, int right, int bottom) {
+        Raster raster = image.getRaster();
+        DataBuffer dataBuffer = raster.getDataBuffer();
+        SampleModel sampleModel = raster.getSampleModel();
+        int translateX = raster.getSampleModelTranslateX();
+        int translateY = raster.getSampleModelTranslateY();
+        long hash = 0;
+        if (dataBuffer instanceof DataBufferInt && dataBuffer.getNumBanks() == 1 && sampleModel instanceof SinglePixelPackedSampleModel) {
+            int[] pixels = ((DataBufferInt) dataBuffer).getData();
+            int stride = ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride();
+            for (int y = top; y < bottom; y++) {
+                int index = dataBuffer.getOffset() + (y - translateY) * stride + (left - translateX);
+                int end = index + right - left;
+                // two pixels per multiplication, the chain of multiplications is what bounds the speed
+                for (; index + 1 < end; index += 2) {
+                    hash = mix(hash, (long) pixels[index] << 32 | (pixels[index + 1] & 0xFFFFFFFFL));
+                }
+                if (index < end) {
+                    hash = mix(hash, pixels[index]);
+                }
+            }
+        } else if (dataBuffer instanceof DataBufferByte && dataBuffer.getNumBanks() == 1 && sampleModel instanceof PixelInterleavedSampleModel) {
+            byte[] bytes = ((DataBufferByte) dataBuffer).getData();
+            PixelInterleavedSampleModel interleavedModel = (PixelInterleavedSampleModel) sampleModel;
+            int stride = interleavedModel.getScanlineStride();
+            int pixelStride = interleavedModel.getPixelStride();
+            for (int y = top; y < bottom; y++) {
+                // the whole span of the row, including any padding between the pixels, is cheaper than picking the bands
+                int from = dataBuffer.getOffset() + (y - translateY) * stride + (left - translateX) * pixelStride;
+                int to = from + (right - left) * pixelStride;
+                int index = from;
+                for (; index + Long.BYTES <= to; index += Long.BYTES) {
+                    hash = mix(hash, (long) BYTES_AS_LONGS.get(bytes, index)); // eight bytes per multiplication
+                }
+                for (; index < to; index++) {
+                    hash = mix(hash, bytes[index]);
+                }
+            }
+        } else {
+            for (int y = top; y < bottom; y++) {
+                for (int x = left; x < right; x++) {
+                    hash = mix(hash, image.getRGB(x, y));
+                }
+            }
+        }
+        // final avalanche (the finalizer of MurmurHash3), so the last words of the tile affect every bit as well
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    // Not (hash + value) * C: that is linear modulo 2^64, so the top byte of a word only reaches the top byte of the
+    // hash and two edits there cancel out one time in 256. Folding the high half back down after every multiplication
+    // makes every bit of a word reach every bit of the next multiplication.
+    private static long mix(long hash, long value) {
+        hash = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 32);
+    }
+}
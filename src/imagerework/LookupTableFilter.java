@@ -0,0 +1,82 @@
+package imagerework;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+// A per-pixel filter precomputed for all the 2^24 colors: applying it is a single indexed load per pixel instead of the
+// channel extraction, compares and clamps of the filter. Only for filters whose output depends on the 24 color bits alone
+// (all the PixelFilters do), the alpha of the input is ignored.
+// The table is exact, so the output is bit for bit the one of the filter, but it costs 64MB (one int per color) and
+// computing the filter 16.7 million times to build, in parallel on the common pool. It only pays off when it is shared
+// and applied to enough pixels, and when the filter costs more than a cache miss: the table is much larger than the
+// caches, so on a photo with many different colors most of the loads go to memory. Run main to get the break-even point
+// on this machine; for the cheap recolor filter it may well never come.
+// Unlike the recolor filter itself, the table is not recognized by the vector kernel of DirectRasterRecolor.
+public class LookupTableFilter implements PixelFilter {
+    private static final int COLORS = 1 << 24;
+
+    private final int[] table;
+
+    public LookupTableFilter(PixelFilter filter) {
+        this.table = new int[COLORS];
+        Arrays.parallelSetAll(table, rgb -> filter.apply(0xFF000000 | rgb));
+    }
+
+    // the table of the recolor filter, built on first use and then shared by every thread
+    public static LookupTableFilter recolor() {
+        return RecolorTableHolder.TABLE;
+    }
+
+    @Override
+    public int apply(int rgb) {
+        return table[rgb & 0x00FFFFFF];
+    }
+
+    // Measures the cost of building the table against the time it saves per image, on the sample image
+    public static void main(String[] args) throws IOException {
+        BufferedImage originalImage = ImageIO.read(new File(args.length > 0 ? args[0] : ImageEditor.SOURCE_FILE));
+        BufferedImage resultImage = new BufferedImage(originalImage.getWidth(), originalImage.getHeight(), BufferedImage.TYPE_INT_RGB);
+        // a pipeline wrapping the recolor filter takes the per-pixel path, like any filter other than the recolor one
+        PixelFilter computed = FilterPipeline.builder().add(PixelFilters.recolor()).build();
+
+        LookupTableFilter lookupTable = null;
+        long buildNanos = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) { // the first builds include the compilation of the filter
+            long startTime = System.nanoTime();
+            lookupTable = new LookupTableFilter(computed);
+            buildNanos = Math.min(buildNanos, System.nanoTime() - startTime);
+        }
+        long computedNanos = timePerImage(originalImage, resultImage, computed);
+        long lookupNanos = timePerImage(originalImage, resultImage, lookupTable);
+        long kernelNanos = timePerImage(originalImage, resultImage, PixelFilters.recolor());
+
+        double megapixels = originalImage.getWidth() * (double) originalImage.getHeight() / 1_000_000;
+        System.out.println(String.format("Table build: %.1f ms (%d threads)", buildNanos / 1e6, Runtime.getRuntime().availableProcessors()));
+        System.out.println(String.format("Per %.1f MP image: computed %.1f ms, lookup table %.1f ms, recolor kernel%s %.1f ms",
+                megapixels, computedNanos / 1e6, lookupNanos / 1e6, DirectRasterRecolor.isVectorized() ? " (vector)" : "", kernelNanos / 1e6));
+        long savedNanos = computedNanos - lookupNanos;
+        if (savedNanos > 0) {
+            double images = (double) buildNanos / savedNanos;
+            System.out.println(String.format("Break-even against the computed filter after %.1f images (%.0f megapixels)", images, images * megapixels));
+        } else {
+            System.out.println("The lookup table is not faster than computing the filter on this machine");
+        }
+    }
+
+    private static long timePerImage(BufferedImage originalImage, BufferedImage resultImage, PixelFilter filter) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 15; i++) {
+            long startTime = System.nanoTime();
+            DirectRasterRecolor.filterRegion(originalImage, resultImage, 0, 0, originalImage.getWidth(), originalImage.getHeight(), filter);
+            best = Math.min(best, System.nanoTime() - startTime);
+        }
+        return best;
+    }
+
+    private static class RecolorTableHolder {
+        private static final LookupTableFilter TABLE = new LookupTableFilter(PixelFilters.recolor());
+    }
+}
@@ -0,0 +1,8 @@
+package imagerework;
+
+// A per-pixel operation: takes a packed 0xAARRGGBB color and returns the new one, looking at no other pixel.
+// Filters are chained with a FilterPipeline, which runs all of them on a pixel before moving to the next one.
+@FunctionalInterface
+public interface PixelFilter {
+    int apply(int rgb);
+}
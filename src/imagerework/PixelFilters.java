@@ -0,0 +1,43 @@
+package imagerework;
+
+import static imagerework.ImageEditor.createRGBFromColors;
+import static imagerework.ImageEditor.getBlue;
+import static imagerework.ImageEditor.getGreen;
+import static imagerework.ImageEditor.getRed;
+
+// The stock per-pixel filters. All of them decompose the color with the ImageEditor helpers and rebuild it with
+// createRGBFromColors, so like the original recoloring they return an opaque color.
+public class PixelFilters {
+    private static final PixelFilter RECOLOR = ImageEditor::recolorRGB;
+
+    private PixelFilters() {
+    }
+
+    // the original transform of the ImageEditor: shades of gray get more red and less green and blue
+    // always the same instance, so DirectRasterRecolor can recognize it and run its dedicated kernel
+    public static PixelFilter recolor() {
+        return RECOLOR;
+    }
+
+    // adds delta (negative to darken) to the three components, clamped to 0..255
+    public static PixelFilter brightness(int delta) {
+        return rgb -> createRGBFromColors(clamp(getRed(rgb) + delta), clamp(getGreen(rgb) + delta), clamp(getBlue(rgb) + delta));
+    }
+
+    // black and white: white when the average of the three components is at least the level, black otherwise
+    public static PixelFilter threshold(int level) {
+        return rgb -> {
+            int value = (getRed(rgb) + getGreen(rgb) + getBlue(rgb)) / 3 >= level ? 255 : 0;
+            return createRGBFromColors(value, value, value);
+        };
+    }
+
+    // exchanges the red and the blue components (RGB <-> BGR)
+    public static PixelFilter swapRedAndBlue() {
+        return rgb -> createRGBFromColors(getBlue(rgb), getGreen(rgb), getRed(rgb));
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
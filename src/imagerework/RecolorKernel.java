@@ -0,0 +1,13 @@
+package imagerework;
+
+// Recolors a run of packed RGB ints, the inner loop of the direct raster path.
+// The scalar kernel calls ImageEditor.recolorRGB for every pixel; VectorRecolorKernel does the same math on many pixels
+// per instruction and is used instead when the jdk.incubator.vector module is available at runtime.
+public interface RecolorKernel {
+
+    /**
+     * Writes recolorRGB(source[sourceIndex + i]) & resultMask to result[resultIndex + i] for i in [0, length).
+     * The source and the result may be the same array at the same index.
+     */
+    void recolor(int[] source, int sourceIndex, int[] result, int resultIndex, int length, int resultMask);
+}
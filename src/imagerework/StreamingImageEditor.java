@@ -0,0 +1,121 @@
+package imagerework;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Locale;
+
+// Recolors an image one horizontal band at a time, so neither the source nor the result is ever fully in memory:
+// - every band is decoded on its own through ImageReadParam.setSourceRegion, into the same reused band image
+// - the band is recolored in parallel by the TiledRecolorEngine
+// - the band is written at its place in the destination with ImageWriter.replacePixels, into an image created empty
+//   up front with prepareWriteEmpty
+// Peak memory is two bands (source and result) plus the reader and writer state, whatever the size of the image.
+//
+// Writing in place is only supported by some formats: of the JDK writers only TIFF can do it (JPEG, PNG and BMP cannot),
+// so the destination must be a .tif file. Any readable format works as the source, but a JPEG is a single compressed
+// stream: the reader has to decode it from the start up to every band, so reading N bands costs about N/2 full decodes
+// (still with bounded memory). A tiled or striped TIFF source is read band by band at no extra cost.
+//
+// Usage: StreamingImageEditor [source] [destination.tif] [bandHeight] [threads]
+public class StreamingImageEditor {
+    public static final String SOURCE_FILE = ImageEditor.SOURCE_FILE;
+    public static final String DESTINATION_FILE = "./out/many-flowers.tif";
+    public static final int DEFAULT_BAND_HEIGHT = 256;
+
+    public static void main(String[] args) throws IOException {
+        File source = new File(args.length > 0 ? args[0] : SOURCE_FILE);
+        File destination = new File(args.length > 1 ? args[1] : DESTINATION_FILE);
+        int bandHeight = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_BAND_HEIGHT;
+        int numberOfThreads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        long startTime = System.currentTimeMillis();
+        try (TiledRecolorEngine engine = new TiledRecolorEngine(numberOfThreads)) {
+            recolor(source, destination, bandHeight, engine);
+        }
+        long endTime = System.currentTimeMillis();
+
+        System.out.println("Overall duration: " + (endTime - startTime));
+    }
+
+    public static void recolor(File source, File destination, int bandHeight, TiledRecolorEngine engine) throws IOException {
+        try (ImageInputStream inputStream = ImageIO.createImageInputStream(source)) {
+            if (inputStream == null) {
+                throw new IOException("Cannot open " + source);
+            }
+            ImageReader reader = first(ImageIO.getImageReaders(inputStream), "No image reader for " + source);
+            try {
+                // not seek forward only: every band is read from its own region, which may be before the current position
+                reader.setInput(inputStream, false, true);
+                recolor(reader, destination, bandHeight, engine);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static void recolor(ImageReader reader, File destination, int bandHeight, TiledRecolorEngine engine) throws IOException {
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        bandHeight = Math.min(bandHeight, height);
+        String suffix = destination.getName().substring(destination.getName().lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        ImageWriter writer = first(ImageIO.getImageWritersBySuffix(suffix), "No image writer for " + destination);
+        destination.delete(); // the output stream would otherwise keep the tail of a longer previous file
+        try (ImageOutputStream outputStream = ImageIO.createImageOutputStream(destination)) {
+            writer.setOutput(outputStream);
+            if (!writer.canWriteEmpty()) {
+                throw new IOException("The " + suffix + " writer cannot write an image band by band, use a .tif destination");
+            }
+            ImageTypeSpecifier resultType = ImageTypeSpecifier.createFromBufferedImageType(BufferedImage.TYPE_INT_RGB);
+            writer.prepareWriteEmpty(null, resultType, width, height, null, null, writer.getDefaultWriteParam());
+            if (!writer.canReplacePixels(0)) {
+                throw new IOException("The " + suffix + " writer cannot replace the pixels of an image, use a .tif destination");
+            }
+            writer.prepareReplacePixels(0, new Rectangle(0, 0, width, height));
+
+            // allocated once for the whole image, every band is decoded into and recolored from the same two buffers
+            BufferedImage sourceBand = reader.getImageTypes(0).next().createBufferedImage(width, bandHeight);
+            BufferedImage resultBand = resultType.createBufferedImage(width, bandHeight);
+            ImageReadParam readParam = reader.getDefaultReadParam();
+            readParam.setDestination(sourceBand);
+            ImageWriteParam writeParam = writer.getDefaultWriteParam();
+
+            for (int top = 0; top < height; top += bandHeight) {
+                int currentBandHeight = Math.min(bandHeight, height - top);
+                readParam.setSourceRegion(new Rectangle(0, top, width, currentBandHeight));
+                reader.read(0, readParam);
+
+                // the last band is usually shorter, only its top rows hold pixels of the image
+                BufferedImage sourceRows = currentBandHeight == bandHeight ? sourceBand : sourceBand.getSubimage(0, 0, width, currentBandHeight);
+                BufferedImage resultRows = currentBandHeight == bandHeight ? resultBand : resultBand.getSubimage(0, 0, width, currentBandHeight);
+                engine.recolor(sourceRows, resultRows);
+
+                writeParam.setDestinationOffset(new Point(0, top));
+                writer.replacePixels(resultRows.getRaster(), writeParam);
+            }
+
+            writer.endReplacePixels();
+            writer.endWriteEmpty();
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static <T> T first(Iterator<T> iterator, String message) throws IOException {
+        if (!iterator.hasNext()) {
+            throw new IOException(message);
+        }
+        return iterator.next();
+    }
+}
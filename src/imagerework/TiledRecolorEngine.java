@@ -0,0 +1,88 @@
+package imagerework;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Recolors an image as a grid of small rectangular tiles scheduled on a work-stealing ForkJoinPool.
+// - every tile is walked row by row (y in the outer loop), which follows the row-major layout of the raster in memory
+// - a tile of the source plus the same tile of the result fit in the L2 cache, so each pixel row is fetched once
+// - the tiles cover the whole image, including the partial tiles on the right and bottom edges, for any image size
+// - idle threads steal tiles from the busy ones, so a slow region of the image does not leave the other threads waiting
+// - tiles are recolored straight on the raster arrays when the image layout allows it (see DirectRasterRecolor)
+public class TiledRecolorEngine implements AutoCloseable {
+    // 256 x 64 pixels x 4 bytes = 64KB per image, 128KB for the source and result tiles together
+    public static final int DEFAULT_TILE_WIDTH = 256;
+    public static final int DEFAULT_TILE_HEIGHT = 64;
+
+    private final ForkJoinPool pool;
+    private final int tileWidth;
+    private final int tileHeight;
+
+    public TiledRecolorEngine(int numberOfThreads) {
+        this(numberOfThreads, DEFAULT_TILE_WIDTH, DEFAULT_TILE_HEIGHT);
+    }
+
+    public TiledRecolorEngine(int numberOfThreads, int tileWidth, int tileHeight) {
+        if (tileWidth <= 0 || tileHeight <= 0) {
+            throw new IllegalArgumentException("tile dimensions must be positive");
+        }
+        this.pool = new ForkJoinPool(numberOfThreads);
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+    }
+
+    public void recolor(BufferedImage originalImage, BufferedImage resultImage) {
+        apply(originalImage, resultImage, PixelFilters.recolor());
+    }
+
+    // applies any per-pixel filter the same way, e.g. a whole FilterPipeline in a single pass over every tile
+    public void apply(BufferedImage originalImage, BufferedImage resultImage, PixelFilter filter) {
+        int tilesPerRow = (originalImage.getWidth() + tileWidth - 1) / tileWidth;
+        int tilesPerColumn = (originalImage.getHeight() + tileHeight - 1) / tileHeight;
+        pool.invoke(new TileRangeTask(originalImage, resultImage, filter, tilesPerRow, 0, tilesPerRow * tilesPerColumn));
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    // Recolors the tiles [firstTile, lastTile), numbered row by row, splitting the range in halves down to single tiles
+    private class TileRangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BufferedImage originalImage;
+        private final BufferedImage resultImage;
+        private final PixelFilter filter;
+        private final int tilesPerRow;
+        private final int firstTile;
+        private final int lastTile;
+
+        public TileRangeTask(BufferedImage originalImage, BufferedImage resultImage, PixelFilter filter, int tilesPerRow, int firstTile, int lastTile) {
+            this.originalImage = originalImage;
+            this.resultImage = resultImage;
+            this.filter = filter;
+            this.tilesPerRow = tilesPerRow;
+            this.firstTile = firstTile;
+            this.lastTile = lastTile;
+        }
+
+        @Override
+        protected void compute() {
+            if (lastTile - firstTile == 1) {
+                recolorTile(firstTile);
+                return;
+            }
+            int middle = (firstTile + lastTile) >>> 1;
+            invokeAll(new TileRangeTask(originalImage, resultImage, filter, tilesPerRow, firstTile, middle),
+                    new TileRangeTask(originalImage, resultImage, filter, tilesPerRow, middle, lastTile));
+        }
+
+        private void recolorTile(int tile) {
+            int left = (tile % tilesPerRow) * tileWidth;
+            int top = (tile / tilesPerRow) * tileHeight;
+            DirectRasterRecolor.filterRegion(originalImage, resultImage, left, top, tileWidth, tileHeight, filter);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package interthreadcommunication;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Compact binary file of square float matrices, instead of the "%.2f" text of the MatricesGenerator:
+//   magic "MATX" | version 1 | N | number of matrices  (4 little-endian ints, 16 bytes)
+//   then every matrix as N * N little-endian floats, row by row
+// A matrix takes 4 bytes per element instead of about 7 characters of text, nothing has to be parsed, and since every
+// matrix has the same size the i-th one is at a known offset: the Reader maps the file and hands out views of the
+// matrices straight on the mapped memory, without reading or copying anything up front.
+//
+// Usage (converts the text file of the MatricesGenerator): BinaryMatrixFile [textFile] [binaryFile]
+public class BinaryMatrixFile {
+    private static final String TEXT_FILE = "./out/matrices";
+    private static final String BINARY_FILE = "./out/matrices.bin";
+    private static final int N = 10;
+
+    private static final int MAGIC = 0x5854414D; // "MATX" in little-endian
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16; // keeps the floats 4 bytes aligned
+
+    public static void main(String[] args) throws IOException {
+        Path textFile = Paths.get(args.length > 0 ? args[0] : TEXT_FILE);
+        Path binaryFile = Paths.get(args.length > 1 ? args[1] : BINARY_FILE);
+        long startTime = System.currentTimeMillis();
+        long count = convertText(textFile, binaryFile, N);
+        System.out.println(String.format("Converted %,d matrices from %s (%,d bytes) to %s (%,d bytes) in %dms", count,
+                textFile, Files.size(textFile), binaryFile, Files.size(binaryFile), System.currentTimeMillis() - startTime));
+    }
+
+    /**
+     * Converts the text format (N lines of comma separated floats then an empty line per matrix) and returns the number
+     * of matrices. The values are parsed exactly like the MatrixMultiplicationExample does, so both hold the same floats.
+     */
+    public static long convertText(Path textFile, Path binaryFile, int n) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(textFile);
+             Writer writer = new Writer(binaryFile, n)) {
+            float[][] matrix = new float[n][n];
+            while (true) {
+                for (int r = 0; r < n; r++) {
+                    String line = reader.readLine();
+                    if (line == null) {
+                        return writer.getCount(); // an incomplete matrix at the end is dropped
+                    }
+                    String[] elements = line.split(",");
+                    for (int c = 0; c < n; c++) {
+                        matrix[r][c] = Float.parseFloat(elements[c]);
+                    }
+                }
+                reader.readLine(); // the empty line after every matrix
+                writer.write(matrix);
+            }
+        }
+    }
+
+    // Appends matrices to a new file through a buffer; the number of matrices in the header is written by close()
+    public static class Writer implements Closeable {
+        private final FileChannel channel;
+        private final int n;
+        private final ByteBuffer buffer;
+        private long count = 0;
+
+        public Writer(Path file, int n) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.n = n;
+            this.buffer = ByteBuffer.allocateDirect(Math.max(1 << 16, n * n * Float.BYTES)).order(ByteOrder.LITTLE_ENDIAN);
+            channel.position(HEADER_BYTES); // the header is only complete once the count is known
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public void write(float[][] matrix) throws IOException {
+            ensureRoom();
+            for (int r = 0; r < n; r++) {
+                for (int c = 0; c < n; c++) {
+                    buffer.putFloat(matrix[r][c]);
+                }
+            }
+            count++;
+        }
+
+        // a matrix of N * N floats row by row, e.g. a view of a Reader
+        public void write(FloatBuffer matrix) throws IOException {
+            ensureRoom();
+            for (int i = 0; i < n * n; i++) {
+                buffer.putFloat(matrix.get(i));
+            }
+            count++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(Math.toIntExact(count)).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void ensureRoom() throws IOException {
+            if (buffer.remaining() < n * n * Float.BYTES) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    // Maps a whole file read only. Thread safe: every call to matrix returns its own view on the shared mapping.
+    public static class Reader {
+        private final MappedByteBuffer mappedBuffer;
+        private final int n;
+        private final int count;
+
+        public Reader(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) { // the mapping outlives the channel
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException(file + " is larger than 2GB, which a single mapping cannot hold");
+                }
+                if (size < HEADER_BYTES) {
+                    throw new IOException(file + " is not a matrix file: too short");
+                }
+                mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            mappedBuffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (mappedBuffer.getInt(0) != MAGIC || mappedBuffer.getInt(4) != VERSION) {
+                throw new IOException(file + " is not a version " + VERSION + " matrix file");
+            }
+            n = mappedBuffer.getInt(8);
+            count = mappedBuffer.getInt(12);
+            if (n <= 0 || count < 0 || HEADER_BYTES + (long) count * n * n * Float.BYTES > mappedBuffer.capacity()) {
+                throw new IOException(file + " is truncated or corrupted: " + count + " matrices of " + n + "x" + n + " do not fit");
+            }
+        }
+
+        public int getN() {
+            return n;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the matrix at the given index as N * N floats row by row: element (r, c) is get(r * N + c).
+         * The view reads the mapped file directly, nothing is copied.
+         */
+        public FloatBuffer matrix(int index) {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException("matrix " + index + " of " + count);
+            }
+            int matrixBytes = n * n * Float.BYTES;
+            return mappedBuffer.slice(HEADER_BYTES + index * matrixBytes, matrixBytes)
+                    .order(ByteOrder.LITTLE_ENDIAN) // a slice is big-endian again
+                    .asFloatBuffer();
+        }
+    }
+}
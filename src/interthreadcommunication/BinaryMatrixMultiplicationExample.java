@@ -0,0 +1,109 @@
+package interthreadcommunication;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.file.Paths;
+
+// The MatrixMultiplicationExample on BinaryMatrixFiles: the producer hands out views of the memory mapped input
+// instead of parsing text, the consumer multiplies straight from those views and appends the results in binary.
+// Input from MatricesGenerator --binary, or from the text file converted with BinaryMatrixFile.
+public class BinaryMatrixMultiplicationExample {
+    private static final String INPUT_FILE = "./out/matrices.bin";
+    private static final String OUTPUT_FILE = "./out/matrices_results.bin";
+    private static final int CAPACITY = 8;
+
+    public static void main(String[] args) throws IOException {
+        BinaryMatrixFile.Reader reader = new BinaryMatrixFile.Reader(Paths.get(INPUT_FILE));
+        RingBuffer<MatricesPair> queue = new RingBuffer<>(CAPACITY, RingBuffer.WaitStrategy.PARK);
+
+        MatricesReaderProducer matricesReaderProducer = new MatricesReaderProducer(reader, queue);
+        MatricesMultiplierConsumer matricesMultiplierConsumer =
+                new MatricesMultiplierConsumer(new BinaryMatrixFile.Writer(Paths.get(OUTPUT_FILE), reader.getN()), reader.getN(), queue);
+
+        matricesReaderProducer.start();
+        matricesMultiplierConsumer.start();
+    }
+
+    private static class MatricesMultiplierConsumer extends Thread {
+        private final BinaryMatrixFile.Writer writer;
+        private final int n;
+        private final RingBuffer<MatricesPair> queue;
+
+        public MatricesMultiplierConsumer(BinaryMatrixFile.Writer writer, int n, RingBuffer<MatricesPair> queue) {
+            this.writer = writer;
+            this.n = n;
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            long startTime = System.currentTimeMillis();
+            float[][] result = new float[n][n]; // the writer copies it out, so one is enough
+            try {
+                MatricesPair matricesPair;
+                while ((matricesPair = queue.take()) != null) {
+                    multiplyMatrices(matricesPair.matrix1, matricesPair.matrix2, result);
+                    writer.write(result);
+                }
+            } catch (IOException | InterruptedException e) {
+                e.printStackTrace();
+            }
+
+            try {
+                writer.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            System.out.println(String.format("%,d results written in %dms, consumer is terminating",
+                    writer.getCount(), System.currentTimeMillis() - startTime));
+        }
+
+        // the same float operations in the same order as the text example, so the results are identical
+        private void multiplyMatrices(FloatBuffer m1, FloatBuffer m2, float[][] result) {
+            for (int r = 0; r < n; r++) {
+                for (int c = 0; c < n; c++) {
+                    float sum = 0;
+                    for (int k = 0; k < n; k++) {
+                        sum += m1.get(r * n + k) * m2.get(k * n + c);
+                    }
+                    result[r][c] = sum;
+                }
+            }
+        }
+    }
+
+    private static class MatricesReaderProducer extends Thread {
+        private final BinaryMatrixFile.Reader reader;
+        private final RingBuffer<MatricesPair> queue;
+
+        public MatricesReaderProducer(BinaryMatrixFile.Reader reader, RingBuffer<MatricesPair> queue) {
+            this.reader = reader;
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            try {
+                // nothing to parse: a pair is two views on the mapped file
+                for (int i = 0; i + 1 < reader.getCount(); i += 2) {
+                    queue.put(new MatricesPair(reader.matrix(i), reader.matrix(i + 1)));
+                }
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            } finally {
+                queue.terminate();
+                System.out.println("No more matrices to read. Producer thread is terminating.");
+            }
+        }
+    }
+
+    private static class MatricesPair {
+        private final FloatBuffer matrix1;
+        private final FloatBuffer matrix2;
+
+        public MatricesPair(FloatBuffer matrix1, FloatBuffer matrix2) {
+            this.matrix1 = matrix1;
+            this.matrix2 = matrix2;
+        }
+    }
+}
@@ -3,15 +3,27 @@ package interthreadcommunication;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Random;
 import java.util.StringJoiner;
 
 public class MatricesGenerator {
     private static final String OUTPUT_FILE = "./out/matrices";
+    private static final String BINARY_OUTPUT_FILE = "./out/matrices.bin";
     private static final int N = 10;
     private static final int NUMBER_OF_MATRIX_PAIRS = 100_000;
 
+    // --binary writes the matrices in the BinaryMatrixFile format instead of text, with the exact floats instead of
+    // their "%.2f" rounding
     public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--binary")) {
+            try (BinaryMatrixFile.Writer writer = new BinaryMatrixFile.Writer(Paths.get(BINARY_OUTPUT_FILE), N)) {
+                for (int i = 0; i < NUMBER_OF_MATRIX_PAIRS * 2; i++) {
+                    writer.write(createMatrix());
+                }
+            }
+            return;
+        }
         File file = new File(OUTPUT_FILE);
         FileWriter fileWriter = new FileWriter(file);
         createMatrices(fileWriter);
@@ -4,34 +4,35 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.LinkedList;
-import java.util.Queue;
 import java.util.Scanner;
 import java.util.StringJoiner;
 
 // Whenever using a queue to decouple multithreaded components, apply back-pressure and limit the size of the queue to prevent it from crashing our app
+// One producer and one consumer use two cores at most, ParallelMatrixMultiplicationExample scales the same work to all of them
 public class MatrixMultiplicationExample {
     private static final String INPUT_FILE = "./out/matrices";
     private static final String OUTPUT_FILE = "./out/matrices_results.txt";
     private static final int N = 10;
+    private static final int CAPACITY = 8; // to safeguard against out of memory exception implement a BACKPRESSURE on our producer
 
     public static void main(String[] args) throws IOException {
-        ThreadSafeQueue threadSafeQueue = new ThreadSafeQueue();
+        // lock free bounded queue: preallocated slots, no lock and no notifyAll on every add and remove
+        RingBuffer<MatricesPair> queue = new RingBuffer<>(CAPACITY, RingBuffer.WaitStrategy.PARK);
         File inputFile = new File(INPUT_FILE);
         File outputFile = new File(OUTPUT_FILE);
 
-        MatricesReaderProducer matricesReaderProducer = new MatricesReaderProducer(new FileReader(inputFile), threadSafeQueue);
-        MatricesMultiplierConsumer matricesMultiplierConsumer = new MatricesMultiplierConsumer(new FileWriter(outputFile), threadSafeQueue);
+        MatricesReaderProducer matricesReaderProducer = new MatricesReaderProducer(new FileReader(inputFile), queue);
+        MatricesMultiplierConsumer matricesMultiplierConsumer = new MatricesMultiplierConsumer(new FileWriter(outputFile), queue);
 
         matricesReaderProducer.start();
         matricesMultiplierConsumer.start();
     }
 
     private static class MatricesMultiplierConsumer extends Thread {
-        private final ThreadSafeQueue queue;
+        private final RingBuffer<MatricesPair> queue;
         private final FileWriter fileWriter;
 
-        public MatricesMultiplierConsumer(FileWriter fileWriter, ThreadSafeQueue queue) {
+        public MatricesMultiplierConsumer(FileWriter fileWriter, RingBuffer<MatricesPair> queue) {
             this.fileWriter = fileWriter;
             this.queue = queue;
         }
@@ -51,7 +52,13 @@ public class MatrixMultiplicationExample {
         @Override
         public void run() {
             while (true) {
-                MatricesPair matricesPair = queue.remove();
+                MatricesPair matricesPair;
+                try {
+                    matricesPair = queue.take(); // null once the producer terminated the queue and it is drained
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                    break;
+                }
                 if (matricesPair == null) {
                     System.out.println("No more matrices to read from the queue, consumer is terminating");
                     break;
@@ -87,9 +94,9 @@ public class MatrixMultiplicationExample {
 
     private static class MatricesReaderProducer extends Thread {
         private final Scanner scanner;
-        private final ThreadSafeQueue queue;
+        private final RingBuffer<MatricesPair> queue;
 
-        public MatricesReaderProducer(FileReader reader, ThreadSafeQueue queue) {
+        public MatricesReaderProducer(FileReader reader, RingBuffer<MatricesPair> queue) {
             this.scanner = new Scanner(reader);
             this.queue = queue;
         }
@@ -109,7 +116,12 @@ public class MatrixMultiplicationExample {
                 matricesPair.matrix1 = matrix1;
                 matricesPair.matrix2 = matrix2;
 
-                queue.add(matricesPair);
+                try {
+                    queue.put(matricesPair); // waits while the queue is full
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                    return;
+                }
             }
         }
 
@@ -130,62 +142,6 @@ public class MatrixMultiplicationExample {
 
     }
 
-    private static class ThreadSafeQueue {
-        private final Queue<MatricesPair> queue = new LinkedList<>(); // not thread safe linked list
-        private boolean isEmpty = true; // indicates whether our queue contains any matrices or not.
-        private boolean isTerminate = false; // is used to signal the consumer that the producer has nothing more to offer and the consumer needs to terminate its thread
-        private static final int CAPACITY = 5; // to safeguard against out of memory exception implement a BACKPRESSURE on our producer
-
-        // all three methods are synchronized which keeps our operation on the queue atomic and also allows us to use the wait() and notify() methods inside them
-        public synchronized void add(MatricesPair matricesPair) { // called by the producer to add a pair of matrices into the queue
-            while (queue.size() == CAPACITY) {
-                // before adding an item to the queue, we are going to check if we already reached the maximum capacity of the queue
-                try {
-                    wait(); // if we are at maximum capacity, producer wait to be woken up by the consumer
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
-            queue.add(matricesPair);
-            isEmpty = false;
-            notifyAll(); // if a consumer is waiting for work, we will notify it so that the consumer would wake up
-        }
-
-        public synchronized MatricesPair remove() { // called by the consumer to consume and remove a pair of matrices from the queue
-            MatricesPair matricesPair = null;
-            while (isEmpty && !isTerminate) {
-                // the consumer has nothing to consume from the queue at the moment, so it would call the wait method and go to sleep releasing the lock on the queue
-                try {
-                    wait();
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
-
-            if (queue.size() == 1) {
-                isEmpty = true;
-            }
-
-            if (queue.isEmpty() && isTerminate) {
-                return null;
-            }
-
-            System.out.println("queue size: " + queue.size());
-            matricesPair = queue.remove(); // return the next element in the queue
-
-            if (queue.size() == CAPACITY - 1) {
-                notifyAll(); // wake up the producer to start filling up the capacity again.
-            }
-
-            return matricesPair;
-        }
-
-        public synchronized void terminate() { // called by the producer to let the consumer know that once the queue becomes empty the consumer should terminate its thread
-            isTerminate = true;
-            notifyAll(); // to wake up all the potentially waiting consumer threads
-        }
-    }
-
     private static class MatricesPair {
         public float[][] matrix1;
         public float[][] matrix2;
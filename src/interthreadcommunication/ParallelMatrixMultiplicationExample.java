@@ -0,0 +1,375 @@
+package interthreadcommunication;
+
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The MatrixMultiplicationExample scaled out to all the cores, with the same output file byte for byte:
+//   planner -> chunks -> [N readers] -> parsed pairs -> [M multipliers] -> formatted results -> writer
+// - the planner scans the file once for line breaks and cuts it into chunks of whole pairs of matrices. Only counting
+//   lines tells where a pair starts (every matrix ends with an empty line, so a boundary between two pairs looks exactly
+//   like the one between the two matrices of a pair), but counting is far cheaper than parsing
+// - the readers parse their chunks in parallel, each reading its own byte range of the file with positional reads
+// - the multipliers multiply and also format the results, which is the most expensive part (String.format per element)
+// - the writer is the only one writing the file: the chunks are numbered by the planner and the writer holds back the
+//   results that overtook an earlier one until it arrives, so the output is in input order
+// All the stages are connected by bounded RingBuffers. The chunks are handed out in order, so a result can only be
+// ahead of the next one to write by the chunks in flight: the reorder buffer of the writer stays small.
+//
+// Usage: ParallelMatrixMultiplicationExample [readers] [multipliers]
+public class ParallelMatrixMultiplicationExample {
+    private static final String INPUT_FILE = "./out/matrices";
+    private static final String OUTPUT_FILE = "./out/matrices_results.txt";
+    private static final int N = 10;
+    private static final int LINES_PER_PAIR = 2 * (N + 1); // N rows and an empty line per matrix
+    private static final int PAIRS_PER_CHUNK = 500; // about 650KB of text
+    private static final int QUEUE_CAPACITY_PER_THREAD = 2;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int readers = args.length > 0 ? Integer.parseInt(args[0]) : cores;
+        int multipliers = args.length > 1 ? Integer.parseInt(args[1]) : cores;
+
+        long startTime = System.currentTimeMillis();
+        long pairs = multiply(INPUT_FILE, OUTPUT_FILE, readers, multipliers);
+        long duration = System.currentTimeMillis() - startTime;
+        System.out.println(String.format("%,d pairs multiplied in %dms (%d readers, %d multipliers)", pairs, duration, readers, multipliers));
+    }
+
+    public static long multiply(String inputFile, String outputFile, int readers, int multipliers) throws IOException, InterruptedException {
+        RingBuffer<Chunk> chunks = new RingBuffer<>(readers * QUEUE_CAPACITY_PER_THREAD, RingBuffer.WaitStrategy.PARK);
+        RingBuffer<ParsedChunk> parsedChunks = new RingBuffer<>(multipliers * QUEUE_CAPACITY_PER_THREAD, RingBuffer.WaitStrategy.PARK);
+        RingBuffer<ResultChunk> results = new RingBuffer<>(multipliers * QUEUE_CAPACITY_PER_THREAD, RingBuffer.WaitStrategy.PARK);
+
+        try (FileChannel channel = FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ);
+             Writer writer = new BufferedWriter(new FileWriter(outputFile))) {
+            // every stage counts its running threads, so the one before it stops handing out work once they are all gone
+            List<Thread> threads = new ArrayList<>();
+            AtomicInteger runningReaders = new AtomicInteger(readers);
+            AtomicInteger runningMultipliers = new AtomicInteger(multipliers);
+            AtomicInteger runningWriters = new AtomicInteger(1);
+            for (int i = 0; i < readers; i++) {
+                threads.add(new MatricesReader(channel, chunks, parsedChunks, runningReaders, runningMultipliers));
+            }
+            for (int i = 0; i < multipliers; i++) {
+                threads.add(new MatricesMultiplier(parsedChunks, results, runningMultipliers, runningWriters));
+            }
+            OrderedWriter orderedWriter = new OrderedWriter(writer, results, runningWriters);
+            threads.add(orderedWriter);
+            for (Thread thread : threads) {
+                thread.start();
+            }
+
+            long pairs;
+            try {
+                pairs = planChunks(channel, chunks, runningReaders);
+            } finally {
+                for (Thread thread : threads) { // the stages wind down on their own once the chunks are terminated
+                    thread.join();
+                }
+            }
+            if (orderedWriter.error != null) {
+                throw orderedWriter.error;
+            }
+            if (orderedWriter.failedChunks > 0) {
+                throw new IOException(orderedWriter.failedChunks + " chunk(s) failed and are missing from " + outputFile);
+            }
+            if (orderedWriter.nextSequence != (pairs + PAIRS_PER_CHUNK - 1) / PAIRS_PER_CHUNK) {
+                throw new IOException("Only " + orderedWriter.nextSequence + " chunks were written, a reader or multiplier failed");
+            }
+            return pairs;
+        }
+    }
+
+    // Counts the lines of the file and hands out a chunk every PAIRS_PER_CHUNK pairs, then the incomplete last one.
+    // Like the single threaded example, an incomplete pair at the end of the file is ignored.
+    private static long planChunks(FileChannel channel, RingBuffer<Chunk> chunks, AtomicInteger runningReaders) throws IOException, InterruptedException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        long sequence = 0;
+        long chunkStart = 0;
+        long position = 0;
+        long lines = 0;
+        long pairs = 0;
+        int pairsInChunk = 0;
+        try {
+            while (channel.read(buffer, position) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    if (buffer.get() == '\n' && ++lines == LINES_PER_PAIR) {
+                        lines = 0;
+                        pairs++;
+                        if (++pairsInChunk == PAIRS_PER_CHUNK) {
+                            long chunkEnd = position + buffer.position();
+                            handOut(chunks, new Chunk(sequence++, chunkStart, (int) (chunkEnd - chunkStart), pairsInChunk), runningReaders, "reader");
+                            chunkStart = chunkEnd;
+                            pairsInChunk = 0;
+                        }
+                    }
+                }
+                position += buffer.limit();
+                buffer.clear();
+            }
+            if (pairsInChunk > 0) {
+                long chunkEnd = position;
+                handOut(chunks, new Chunk(sequence, chunkStart, (int) (chunkEnd - chunkStart), pairsInChunk), runningReaders, "reader");
+            }
+        } finally {
+            chunks.terminate(); // also when planning failed, so that the readers still finish
+        }
+        return pairs;
+    }
+
+    // Like put, but gives up once every consumer of the queue is gone (e.g. killed by an Error): nobody would ever take
+    // the element, and put would wait forever
+    private static <T> void handOut(RingBuffer<T> queue, T element, AtomicInteger runningConsumers, String consumer) throws IOException, InterruptedException {
+        while (!queue.offer(element)) {
+            if (runningConsumers.get() == 0) {
+                throw new IOException("Every " + consumer + " failed, nothing more can be handed out");
+            }
+            Thread.sleep(1); // the consumers are behind, waiting a little longer does not slow anything down
+        }
+    }
+
+    private static class MatricesReader extends Thread {
+        private final FileChannel channel;
+        private final RingBuffer<Chunk> chunks;
+        private final RingBuffer<ParsedChunk> parsedChunks;
+        private final AtomicInteger runningReaders;
+        private final AtomicInteger runningMultipliers;
+
+        public MatricesReader(FileChannel channel, RingBuffer<Chunk> chunks, RingBuffer<ParsedChunk> parsedChunks,
+                              AtomicInteger runningReaders, AtomicInteger runningMultipliers) {
+            this.channel = channel;
+            this.chunks = chunks;
+            this.parsedChunks = parsedChunks;
+            this.runningReaders = runningReaders;
+            this.runningMultipliers = runningMultipliers;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Chunk chunk;
+                while ((chunk = chunks.take()) != null) {
+                    float[][][] matrices;
+                    try {
+                        matrices = parse(read(chunk), chunk.pairs);
+                    } catch (IOException | RuntimeException e) {
+                        // a read error or malformed text (NumberFormatException, ArrayIndexOutOfBoundsException): the chunk
+                        // still goes down the pipeline, empty, so the writer does not wait for it and multiply reports it
+                        System.err.println("Chunk " + chunk.sequence + " at byte " + chunk.offset + " failed: " + e);
+                        matrices = null;
+                    }
+                    handOut(parsedChunks, new ParsedChunk(chunk.sequence, matrices), runningMultipliers, "multiplier");
+                }
+            } catch (IOException e) {
+                System.err.println(e.getMessage()); // multiply reports the missing chunks
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            } finally {
+                // the last reader out tells the multipliers there is nothing more to come
+                if (runningReaders.decrementAndGet() == 0) {
+                    parsedChunks.terminate();
+                }
+            }
+        }
+
+        private byte[] read(Chunk chunk) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(chunk.length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, chunk.offset + buffer.position()) < 0) { // positional: no shared file pointer
+                    throw new EOFException("The file is shorter than planned");
+                }
+            }
+            return buffer.array();
+        }
+
+        // Same parsing as the single threaded example: comma separated floats, N rows per matrix, then an empty line
+        private static float[][][] parse(byte[] bytes, int pairs) {
+            float[][][] matrices = new float[2 * pairs][][];
+            int position = 0;
+            for (int m = 0; m < matrices.length; m++) {
+                float[][] matrix = new float[N][N];
+                for (int r = 0; r < N; r++) {
+                    for (int c = 0; c < N; c++) {
+                        int end = position;
+                        while (bytes[end] != ',' && bytes[end] != '\n') {
+                            end++;
+                        }
+                        matrix[r][c] = Float.parseFloat(new String(bytes, position, end - position, StandardCharsets.ISO_8859_1));
+                        position = end + 1;
+                    }
+                }
+                position++; // the empty line
+                matrices[m] = matrix;
+            }
+            return matrices;
+        }
+    }
+
+    private static class MatricesMultiplier extends Thread {
+        private final RingBuffer<ParsedChunk> parsedChunks;
+        private final RingBuffer<ResultChunk> results;
+        private final AtomicInteger runningMultipliers;
+        private final AtomicInteger runningWriters;
+
+        public MatricesMultiplier(RingBuffer<ParsedChunk> parsedChunks, RingBuffer<ResultChunk> results,
+                                  AtomicInteger runningMultipliers, AtomicInteger runningWriters) {
+            this.parsedChunks = parsedChunks;
+            this.results = results;
+            this.runningMultipliers = runningMultipliers;
+            this.runningWriters = runningWriters;
+        }
+
+        @Override
+        public void run() {
+            try {
+                ParsedChunk parsedChunk;
+                while ((parsedChunk = parsedChunks.take()) != null) {
+                    if (parsedChunk.matrices == null) {
+                        handOut(results, new ResultChunk(parsedChunk.sequence, null), runningWriters, "writer");
+                        continue;
+                    }
+                    StringBuilder text = new StringBuilder();
+                    for (int m = 0; m < parsedChunk.matrices.length; m += 2) {
+                        appendMatrix(text, multiplyMatrices(parsedChunk.matrices[m], parsedChunk.matrices[m + 1]));
+                    }
+                    handOut(results, new ResultChunk(parsedChunk.sequence, text.toString()), runningWriters, "writer");
+                }
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            } finally {
+                if (runningMultipliers.decrementAndGet() == 0) {
+                    results.terminate();
+                }
+            }
+        }
+
+        private static float[][] multiplyMatrices(float[][] m1, float[][] m2) {
+            float[][] result = new float[N][N];
+            for (int r = 0; r < N; r++) {
+                for (int c = 0; c < N; c++) {
+                    for (int k = 0; k < N; k++) {
+                        result[r][c] += m1[r][k] * m2[k][c];
+                    }
+                }
+            }
+            return result;
+        }
+
+        // exactly what the single threaded example writes for a matrix
+        private static void appendMatrix(StringBuilder text, float[][] matrix) {
+            for (int r = 0; r < N; r++) {
+                StringJoiner stringJoiner = new StringJoiner(", ");
+                for (int c = 0; c < N; c++) {
+                    stringJoiner.add(String.format("%.2f", matrix[r][c]));
+                }
+                text.append(stringJoiner).append('\n');
+            }
+            text.append('\n');
+        }
+    }
+
+    private static class OrderedWriter extends Thread {
+        private final Writer writer;
+        private final RingBuffer<ResultChunk> results;
+        private final Map<Long, ResultChunk> waiting = new HashMap<>(); // results that arrived before an earlier one
+        private long nextSequence = 0;
+        private int failedChunks = 0;
+        private IOException error;
+        private final AtomicInteger runningWriters;
+
+        public OrderedWriter(Writer writer, RingBuffer<ResultChunk> results, AtomicInteger runningWriters) {
+            this.writer = writer;
+            this.results = results;
+            this.runningWriters = runningWriters;
+        }
+
+        @Override
+        public void run() {
+            try {
+                ResultChunk result;
+                while ((result = results.take()) != null) {
+                    waiting.put(result.sequence, result);
+                    ResultChunk next;
+                    while ((next = waiting.remove(nextSequence)) != null) {
+                        if (next.text != null) {
+                            writer.write(next.text);
+                        } else {
+                            failedChunks++;
+                        }
+                        nextSequence++;
+                    }
+                }
+            } catch (IOException e) {
+                error = e;
+                // keep draining so the multipliers do not wait forever on a full queue
+                drain();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            } finally {
+                runningWriters.decrementAndGet();
+            }
+        }
+
+        private void drain() {
+            try {
+                while (results.take() != null) {
+                    // discard
+                }
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // A range of the file holding whole pairs of matrices, numbered in file order
+    private static class Chunk {
+        private final long sequence;
+        private final long offset;
+        private final int length;
+        private final int pairs;
+
+        public Chunk(long sequence, long offset, int length, int pairs) {
+            this.sequence = sequence;
+            this.offset = offset;
+            this.length = length;
+            this.pairs = pairs;
+        }
+    }
+
+    private static class ParsedChunk {
+        private final long sequence;
+        private final float[][][] matrices; // the two matrices of every pair one after the other, null if the chunk failed
+
+        public ParsedChunk(long sequence, float[][][] matrices) {
+            this.sequence = sequence;
+            this.matrices = matrices;
+        }
+    }
+
+    private static class ResultChunk {
+        private final long sequence;
+        private final String text; // null if the chunk failed
+
+        public ResultChunk(long sequence, String text) {
+            this.sequence = sequence;
+            this.text = text;
+        }
+    }
+}
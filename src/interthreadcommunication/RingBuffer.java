@@ -0,0 +1,171 @@
+package interthreadcommunication;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Bounded lock free queue for any number of producers and consumers (Dmitry Vyukov's bounded MPMC queue):
+// - the slots are allocated once, adding an element allocates nothing (unlike a node per element in a LinkedList)
+// - every slot has a sequence number telling whose turn it is: slot i is free for the producer of position p when its
+//   sequence is p, and holds an element for the consumer of position p when its sequence is p + 1
+// - a producer (consumer) claims a position with a single compareAndSet on the tail (head) counter, then writes (reads)
+//   its slot and publishes it by advancing the sequence of the slot, so producers and consumers never contend on a lock
+//   and only contend among themselves on their own counter
+// - a full queue makes put wait (back-pressure on the producers), an empty one makes take wait; how they wait is the
+//   WaitStrategy: nobody is ever notified, so nothing is woken up on every transition like with wait/notifyAll
+// Same termination as the blocking queue it replaces: once the producers are done, one of them calls terminate(), and
+// the consumers still get every element left in the queue before take returns null.
+public class RingBuffer<T> {
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final AtomicLong tail = new AtomicLong(); // next position to add at
+    private final AtomicLong head = new AtomicLong(); // next position to remove from
+    private volatile boolean isTerminate = false;
+
+    public enum WaitStrategy {
+        // busy spin: lowest latency, burns a whole core per waiting thread, only when there are cores to spare
+        SPIN,
+        // spin a little then give the core to other threads, still wakes up fast
+        YIELD,
+        // spin, yield, then sleep for longer and longer (up to 1ms): almost no CPU when idle, at the cost of latency
+        PARK;
+
+        private static final int SPIN_TRIES = 100;
+        private static final int YIELD_TRIES = 200;
+        private static final long MAX_PARK_NANOS = 1_000_000;
+
+        // waits once, after the given number of failed attempts
+        private void idle(int attempt) {
+            if (this == SPIN || attempt < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (this == YIELD || attempt < YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1000L << Math.min(10, attempt - YIELD_TRIES)));
+            }
+        }
+    }
+
+    /**
+     * Creates a ring buffer holding at least the given number of elements, rounded up to a power of two.
+     * There are at least two slots: with a single one, "published for the consumer of position p" and "free for the
+     * producer of position p + 1" would be the same sequence number.
+     */
+    public RingBuffer(int capacity, WaitStrategy waitStrategy) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        }
+        int size = Math.max(2, Integer.highestOneBit(capacity - 1) << 1);
+        this.elements = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    public int capacity() {
+        return elements.length;
+    }
+
+    // only a snapshot, other threads may be adding or removing at the same time
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    /**
+     * Adds the element if there is room, without waiting. Returns false when the queue is full.
+     * Throws IllegalStateException once the queue is terminated: the consumers may already be gone.
+     */
+    public boolean offer(T element) {
+        if (element == null) {
+            throw new NullPointerException("null is returned by take when the queue is terminated");
+        }
+        if (isTerminate) {
+            throw new IllegalStateException("The ring buffer is terminated");
+        }
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[index] = element;
+                    sequences.setRelease(index, position + 1); // publishes the element to the consumer of this position
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false; // the slot still holds the element of the previous lap: full
+            }
+            // otherwise another producer took this position first, try the next one
+        }
+    }
+
+    /**
+     * Removes the next element without waiting. Returns null when the queue is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        while (true) {
+            long position = head.get();
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    T element = (T) elements[index];
+                    elements[index] = null; // the queue does not keep consumed elements alive
+                    sequences.setRelease(index, position + mask + 1); // frees the slot for the producer of the next lap
+                    return element;
+                }
+            } else if (difference < 0) {
+                return null; // not published yet: empty
+            }
+            // otherwise another consumer took this position first, try the next one
+        }
+    }
+
+    /**
+     * Adds the element, waiting while the queue is full (back-pressure on the producers).
+     * Throws IllegalStateException once the queue is terminated, also while waiting for room.
+     */
+    public void put(T element) throws InterruptedException {
+        for (int attempt = 0; !offer(element); attempt++) { // offer checks for termination before every attempt
+            waitFor(attempt);
+        }
+    }
+
+    /**
+     * Removes the next element, waiting while the queue is empty.
+     * Returns null once the queue is terminated and every element added before was taken.
+     */
+    public T take() throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            T element = poll();
+            if (element != null) {
+                return element;
+            }
+            if (isTerminate) {
+                // everything added before terminate() is visible now, look once more before giving up
+                return poll();
+            }
+            waitFor(attempt);
+        }
+    }
+
+    /**
+     * Called once every producer is done: the consumers drain what is left and then get null from take.
+     */
+    public void terminate() {
+        isTerminate = true;
+    }
+
+    private void waitFor(int attempt) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        waitStrategy.idle(attempt);
+    }
+}